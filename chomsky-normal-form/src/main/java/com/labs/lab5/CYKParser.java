@@ -0,0 +1,345 @@
+package com.labs.lab5;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// CYK recognizer over a grammar in Chomsky Normal Form (as produced by toChomskyNormalForm).
+// Non-terminals are renumbered densely and every table cell is a bitset of them stored as
+// `words` longs in one flat array. Cells are laid out by span length, so each anti-diagonal is a
+// contiguous block whose cells only depend on shorter spans and can be filled in parallel.
+public class CYKParser {
+    // Below this many split points a diagonal is filled on the calling thread
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private final Grammar grammar;
+    private final ForkJoinPool pool;
+
+    private final int nonTerminalCount;
+    private final int words;
+    private final int[] denseIds;        // symbol id -> dense non-terminal index, -1 for other symbols
+    private final int[] symbolIds;       // dense index -> symbol id
+    private final long[][] terminalHeads; // terminal symbol id -> heads A of rules A -> a
+    private final int startIndex;
+    private final boolean acceptsEmpty;
+
+    // Binary rules indexed by (B, C), sparsely: rightSymbols[B] holds the C's that ever follow B in
+    // ascending order and rightPairs[B] the matching pair numbers. pairHeads holds the heads A of every
+    // A -> B C for a pair, and rightMasks[B] the same C's as rightSymbols[B] as a bitset filter.
+    private final int[][] rightSymbols;
+    private final int[][] rightPairs;
+    private final long[] pairHeads;
+    private final long[] rightMasks;
+
+    // Binary rules grouped by head for tree extraction, {B, C} pairs per dense head index
+    private final int[][][] rulesByHead;
+
+    public CYKParser(Grammar grammar) {
+        this(grammar, ForkJoinPool.commonPool());
+    }
+
+    public CYKParser(Grammar grammar, ForkJoinPool pool) {
+        this.grammar = grammar;
+        this.pool = pool;
+
+        SymbolTable symbols = grammar.symbolTable();
+        BitSet nonTerminals = grammar.nonTerminalIds();
+        BitSet terminals = grammar.terminalIds();
+
+        this.nonTerminalCount = nonTerminals.cardinality();
+        this.words = Math.max(1, (nonTerminalCount + 63) >>> 6);
+        this.denseIds = new int[symbols.size()];
+        this.symbolIds = new int[nonTerminalCount];
+        Arrays.fill(denseIds, -1);
+        int next = 0;
+        for (int id = nonTerminals.nextSetBit(0); id >= 0; id = nonTerminals.nextSetBit(id + 1)) {
+            denseIds[id] = next;
+            symbolIds[next++] = id;
+        }
+        this.startIndex = denseIds[grammar.startSymbolId()];
+
+        int n = nonTerminalCount;
+        this.terminalHeads = new long[symbols.size()][];
+        Map<Long, Integer> pairIds = new HashMap<>();
+        this.rightMasks = new long[n * words];
+        List<long[]> heads = new ArrayList<>();
+        List<List<int[]>> byHead = new ArrayList<>();
+        boolean emptyRule = false;
+
+        for (int a = 0; a < n; a++) {
+            int lhs = symbolIds[a];
+            List<int[]> binary = new ArrayList<>();
+            for (int[] production : grammar.rulesOf(lhs)) {
+                if (production.length == 0 && lhs == grammar.startSymbolId()) {
+                    emptyRule = true;
+                } else if (production.length == 1 && terminals.get(production[0])) {
+                    if (terminalHeads[production[0]] == null) {
+                        terminalHeads[production[0]] = new long[words];
+                    }
+                    set(terminalHeads[production[0]], 0, a);
+                } else if (production.length == 2 && denseIds[production[0]] >= 0 && denseIds[production[1]] >= 0) {
+                    int b = denseIds[production[0]];
+                    int c = denseIds[production[1]];
+                    long key = ((long) b << 32) | c;
+                    Integer pair = pairIds.get(key);
+                    if (pair == null) {
+                        pair = heads.size();
+                        pairIds.put(key, pair);
+                        heads.add(new long[words]);
+                        set(rightMasks, b * words, c);
+                    }
+                    set(heads.get(pair), 0, a);
+                    binary.add(new int[]{b, c});
+                } else {
+                    throw new IllegalArgumentException("Grammar is not in Chomsky Normal Form: "
+                            + symbols.name(lhs) + " -> " + describe(symbols, production));
+                }
+            }
+            byHead.add(binary);
+        }
+        this.acceptsEmpty = emptyRule;
+
+        this.pairHeads = new long[heads.size() * words];
+        for (int pair = 0; pair < heads.size(); pair++) {
+            System.arraycopy(heads.get(pair), 0, pairHeads, pair * words, words);
+        }
+        this.rightSymbols = new int[n][];
+        this.rightPairs = new int[n][];
+        for (int b = 0; b < n; b++) {
+            int count = 0;
+            for (int word = 0; word < words; word++) {
+                count += Long.bitCount(rightMasks[b * words + word]);
+            }
+            int[] symbolsOfB = new int[count];
+            int[] pairsOfB = new int[count];
+            int k = 0;
+            for (int word = 0; word < words; word++) {
+                long bits = rightMasks[b * words + word];
+                while (bits != 0) {
+                    int c = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    symbolsOfB[k] = c;
+                    pairsOfB[k++] = pairIds.get(((long) b << 32) | c);
+                }
+            }
+            rightSymbols[b] = symbolsOfB;
+            rightPairs[b] = pairsOfB;
+        }
+
+        this.rulesByHead = new int[n][][];
+        for (int a = 0; a < n; a++) {
+            rulesByHead[a] = byHead.get(a).toArray(new int[0][]);
+        }
+    }
+
+    public boolean accepts(List<String> input) {
+        if (input.isEmpty()) {
+            return acceptsEmpty;
+        }
+        long[] table = fill(input);
+        return get(table, offset(input.size(), 0, input.size()), startIndex);
+    }
+
+    public ParseForest parse(List<String> input) {
+        if (input.isEmpty()) {
+            return new ParseForest(this, input, new long[0]);
+        }
+        return new ParseForest(this, input, fill(input));
+    }
+
+    private long[] fill(List<String> input) {
+        int length = input.size();
+        long cells = (long) length * (length + 1) / 2;
+        if (cells * words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Input too long for the CYK table: " + length + " tokens");
+        }
+        Table table = new Table(length, new long[(int) (cells * words)]);
+
+        // Span length 1: the heads of A -> a
+        SymbolTable symbols = grammar.symbolTable();
+        for (int i = 0; i < length; i++) {
+            int terminal = symbols.id(input.get(i));
+            if (terminal >= 0 && terminalHeads[terminal] != null) {
+                System.arraycopy(terminalHeads[terminal], 0, table.cells, table.cell(i, 1), words);
+                table.markNonEmpty(i, 1);
+            }
+        }
+
+        for (int span = 2; span <= length; span++) {
+            int starts = length - span + 1;
+            if ((long) starts * (span - 1) < PARALLEL_THRESHOLD) {
+                fillCells(table, span, 0, starts);
+            } else {
+                pool.invoke(new DiagonalTask(table, span, 0, starts));
+            }
+        }
+        return table.cells;
+    }
+
+    // Fills the cells of one anti-diagonal for start positions [from, to)
+    private void fillCells(Table table, int span, int from, int to) {
+        long[] cells = table.cells;
+        for (int i = from; i < to; i++) {
+            int end = i + span;
+            int target = table.cell(i, span);
+            long[] leftSpans = table.startingAt[i];
+            long[] rightSpans = table.endingAt[end];
+            boolean nonEmpty = false;
+
+            // Only split points where both halves derive something are worth combining
+            for (int word = (i + 1) >>> 6, last = (end - 1) >>> 6; word <= last; word++) {
+                long splits = leftSpans[word] & rightSpans[word];
+                while (splits != 0) {
+                    int middle = (word << 6) + Long.numberOfTrailingZeros(splits);
+                    splits &= splits - 1;
+                    int left = table.cell(i, middle - i);
+                    int right = table.cell(middle, end - middle);
+
+                    for (int lw = 0; lw < words; lw++) {
+                        long leftBits = cells[left + lw];
+                        while (leftBits != 0) {
+                            int b = (lw << 6) + Long.numberOfTrailingZeros(leftBits);
+                            leftBits &= leftBits - 1;
+
+                            int mask = b * words;
+                            int[] symbolsOfB = rightSymbols[b];
+                            // The C's come in ascending order, so each search starts past the last one
+                            int found = 0;
+                            for (int rw = 0; rw < words; rw++) {
+                                long rightBits = rightMasks[mask + rw] & cells[right + rw];
+                                while (rightBits != 0) {
+                                    int c = (rw << 6) + Long.numberOfTrailingZeros(rightBits);
+                                    rightBits &= rightBits - 1;
+
+                                    found = Arrays.binarySearch(symbolsOfB, found, symbolsOfB.length, c);
+                                    int heads = rightPairs[b][found++] * words;
+                                    for (int w = 0; w < words; w++) {
+                                        cells[target + w] |= pairHeads[heads + w];
+                                    }
+                                    nonEmpty = true;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (nonEmpty) {
+                table.markNonEmpty(i, span);
+            }
+        }
+    }
+
+    // The flat cell array plus, per position, bitsets of the boundaries of non-empty spans.
+    // startingAt[i] has bit e set when cell [i, e) is non-empty and endingAt[e] has bit i set, so the
+    // useful split points of [i, e) are the intersection of the two. A diagonal writes each row once.
+    private final class Table {
+        private final long[] cells;
+        private final long[][] startingAt;
+        private final long[][] endingAt;
+        private final int[] spanOffsets;
+
+        Table(int length, long[] cells) {
+            this.cells = cells;
+            int positionWords = (length + 64) >>> 6;
+            this.startingAt = new long[length + 1][positionWords];
+            this.endingAt = new long[length + 1][positionWords];
+            this.spanOffsets = new int[length + 1];
+            for (int span = 1; span <= length; span++) {
+                spanOffsets[span] = offset(length, 0, span);
+            }
+        }
+
+        int cell(int start, int span) {
+            return spanOffsets[span] + start * words;
+        }
+
+        void markNonEmpty(int start, int span) {
+            int end = start + span;
+            startingAt[start][end >>> 6] |= 1L << end;
+            endingAt[end][start >>> 6] |= 1L << start;
+        }
+    }
+
+    private final class DiagonalTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Table table;
+        private final int span;
+        private final int from;
+        private final int to;
+
+        DiagonalTask(Table table, int span, int from, int to) {
+            this.table = table;
+            this.span = span;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) (to - from) * (span - 1) < PARALLEL_THRESHOLD || to - from < 2) {
+                fillCells(table, span, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new DiagonalTask(table, span, from, middle),
+                    new DiagonalTask(table, span, middle, to));
+        }
+    }
+
+    // Index of the first word of cell (start, span) for an input of the given length
+    int offset(int length, int start, int span) {
+        // Spans 1..span-1 hold length, length-1, ... cells
+        long before = (long) (span - 1) * length - (long) (span - 1) * (span - 2) / 2;
+        return (int) ((before + start) * words);
+    }
+
+    boolean get(long[] table, int cell, int nonTerminal) {
+        return (table[cell + (nonTerminal >>> 6)] & (1L << nonTerminal)) != 0;
+    }
+
+    Grammar getGrammar() {
+        return grammar;
+    }
+
+    int getWords() {
+        return words;
+    }
+
+    int getStartIndex() {
+        return startIndex;
+    }
+
+    boolean acceptsEmpty() {
+        return acceptsEmpty;
+    }
+
+    String nameOf(int nonTerminal) {
+        return grammar.symbolTable().name(symbolIds[nonTerminal]);
+    }
+
+    int[][] binaryRules(int nonTerminal) {
+        return rulesByHead[nonTerminal];
+    }
+
+    private static void set(long[] bits, int base, int index) {
+        bits[base + (index >>> 6)] |= 1L << index;
+    }
+
+    private static String describe(SymbolTable symbols, int[] production) {
+        if (production.length == 0) {
+            return "ε";
+        }
+        StringBuilder sb = new StringBuilder(symbols.name(production[0]));
+        for (int i = 1; i < production.length; i++) {
+            sb.append(' ').append(symbols.name(production[i]));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,466 @@
+package com.labs.lab5;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Earley parser over any Grammar, ε-rules and unit rules included, so no normalization is needed.
+//  - Every (rule, dot) pair is a dense int and an item is that int and its origin packed in a long,
+//    kept per input position in an open-addressing hash set plus an insertion-ordered worklist.
+//  - Nullable non-terminals are precomputed and skipped over as soon as they are predicted
+//    (Aycock & Horspool), so completions never have to revisit the set they started in.
+//  - Leo's optimization: when a set holds exactly one item waiting on B and B is the last symbol of
+//    that rule, completing B jumps straight to the topmost item of the chain of such reductions.
+//    Right-recursive rules then stay linear instead of quadratic.
+public class EarleyParser {
+    private static final String EPSILON = "ε";
+    private static final long NO_LEO_ITEM = -1;
+
+    private final SymbolTable symbols;
+    private final BitSet nonTerminals;
+    private final BitSet nullable;
+    private final int startSymbol;
+
+    // Dotted rules: dotted d belongs to rule dottedRule[d] and dottedNext[d] is the symbol after its dot
+    private final int[] ruleLhs;
+    private final int[][] ruleRhs;
+    private final int[] ruleFirstDotted;
+    private final int[] dottedRule;
+    private final int[] dottedNext;      // -1 when the rule is complete
+    private final int[][] rulesByLhs;
+
+    public EarleyParser(Grammar grammar) {
+        this.symbols = grammar.symbolTable();
+        this.nonTerminals = grammar.nonTerminalIds();
+        this.nullable = grammar.nullableNonTerminalIds();
+        this.startSymbol = grammar.startSymbolId();
+
+        List<int[]> rhs = new ArrayList<>();
+        List<Integer> lhs = new ArrayList<>();
+        this.rulesByLhs = new int[symbols.size()][];
+        for (int nonTerminal = nonTerminals.nextSetBit(0); nonTerminal >= 0; nonTerminal = nonTerminals.nextSetBit(nonTerminal + 1)) {
+            int[][] rules = grammar.rulesOf(nonTerminal);
+            rulesByLhs[nonTerminal] = new int[rules.length];
+            for (int i = 0; i < rules.length; i++) {
+                rulesByLhs[nonTerminal][i] = rhs.size();
+                lhs.add(nonTerminal);
+                rhs.add(rules[i]);
+            }
+        }
+
+        int ruleCount = rhs.size();
+        this.ruleLhs = new int[ruleCount];
+        this.ruleRhs = rhs.toArray(new int[0][]);
+        this.ruleFirstDotted = new int[ruleCount];
+        int dottedCount = 0;
+        for (int rule = 0; rule < ruleCount; rule++) {
+            ruleLhs[rule] = lhs.get(rule);
+            ruleFirstDotted[rule] = dottedCount;
+            dottedCount += ruleRhs[rule].length + 1;
+        }
+        this.dottedRule = new int[dottedCount];
+        this.dottedNext = new int[dottedCount];
+        for (int rule = 0; rule < ruleCount; rule++) {
+            for (int dot = 0; dot <= ruleRhs[rule].length; dot++) {
+                int dotted = ruleFirstDotted[rule] + dot;
+                dottedRule[dotted] = rule;
+                dottedNext[dotted] = dot < ruleRhs[rule].length ? ruleRhs[rule][dot] : -1;
+            }
+        }
+    }
+
+    public boolean accepts(List<String> input) {
+        ItemSet[] sets = recognize(input, true);
+        return sets != null && accepted(sets[input.size()]);
+    }
+
+    // One derivation tree of the input in terms of the original rules, or null when it is rejected.
+    // Tree extraction needs every completed item, so this runs without the Leo shortcut.
+    public ParseTree parse(List<String> input) {
+        ItemSet[] sets = recognize(input, false);
+        if (sets == null || !accepted(sets[input.size()])) {
+            return null;
+        }
+        return new TreeBuilder(input, sets).build();
+    }
+
+    // Returns null as soon as an input position can not be reached
+    private ItemSet[] recognize(List<String> input, boolean useLeo) {
+        int length = input.size();
+        int[] tokens = new int[length];
+        for (int i = 0; i < length; i++) {
+            tokens[i] = symbols.id(input.get(i));
+            if (tokens[i] < 0 || nonTerminals.get(tokens[i])) {
+                return null; // Not a terminal of the grammar
+            }
+        }
+
+        ItemSet[] sets = new ItemSet[length + 1];
+        sets[0] = new ItemSet(sets, 0);
+        for (int rule : rulesOf(startSymbol)) {
+            sets[0].add(item(ruleFirstDotted[rule], 0));
+        }
+
+        for (int position = 0; position <= length; position++) {
+            ItemSet set = sets[position];
+            if (set.size == 0) {
+                return null;
+            }
+            if (position < length) {
+                sets[position + 1] = new ItemSet(sets, position + 1);
+            }
+
+            for (int index = 0; index < set.size; index++) {
+                long item = set.items[index];
+                int dotted = dotted(item);
+                int origin = origin(item);
+                int next = dottedNext[dotted];
+
+                if (next < 0) {
+                    // Completions of empty spans were already done by skipping the nullable symbol
+                    if (origin < position) {
+                        complete(sets, ruleLhs[dottedRule[dotted]], origin, set, useLeo);
+                    }
+                } else if (nonTerminals.get(next)) {
+                    for (int rule : rulesOf(next)) {
+                        set.add(item(ruleFirstDotted[rule], position));
+                    }
+                    if (nullable.get(next)) {
+                        set.add(item(dotted + 1, origin));
+                    }
+                } else if (position < length && tokens[position] == next) {
+                    sets[position + 1].add(item(dotted + 1, origin));
+                }
+            }
+
+            set.close(useLeo);
+        }
+
+        return sets;
+    }
+
+    private void complete(ItemSet[] sets, int symbol, int origin, ItemSet target, boolean useLeo) {
+        ItemSet originSet = sets[origin];
+        if (useLeo) {
+            long topmost = originSet.leoItem(symbol);
+            if (topmost != NO_LEO_ITEM) {
+                target.add(topmost);
+                return;
+            }
+        }
+        long[] waiting = originSet.waitingOn(symbol);
+        if (waiting == null) {
+            return;
+        }
+        for (long item : waiting) {
+            target.add(item(dotted(item) + 1, origin(item)));
+        }
+    }
+
+    private boolean accepted(ItemSet last) {
+        for (int index = 0; index < last.size; index++) {
+            long item = last.items[index];
+            int dotted = dotted(item);
+            if (origin(item) == 0 && dottedNext[dotted] < 0 && ruleLhs[dottedRule[dotted]] == startSymbol) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] rulesOf(int nonTerminal) {
+        int[] rules = rulesByLhs[nonTerminal];
+        return rules == null ? new int[0] : rules;
+    }
+
+    private static long item(int dotted, int origin) {
+        return ((long) dotted << 32) | origin;
+    }
+
+    private static int dotted(long item) {
+        return (int) (item >>> 32);
+    }
+
+    private static int origin(long item) {
+        return (int) item;
+    }
+
+    // The items of one input position
+    private final class ItemSet {
+        private final ItemSet[] sets;
+        private final int position;
+        private long[] items = new long[16];
+        private int size;
+        // Open addressing from item + 1 (0 marks a free slot) to the item's index in the worklist
+        private long[] table = new long[32];
+        private int[] indices = new int[32];
+
+        // Filled once the set is closed: the items waiting on each symbol and the Leo items
+        private Map<Integer, long[]> waiting;
+        private Map<Integer, Long> leoItems;
+
+        ItemSet(ItemSet[] sets, int position) {
+            this.sets = sets;
+            this.position = position;
+        }
+
+        void add(long item) {
+            long key = item + 1;
+            int mask = table.length - 1;
+            int slot = hash(key) & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == key) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = key;
+            indices[slot] = size;
+
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+            if (size * 2 > table.length) {
+                rehash();
+            }
+        }
+
+        // Position of the item in the worklist, -1 when it is not in the set
+        int indexOf(long item) {
+            long key = item + 1;
+            int mask = table.length - 1;
+            int slot = hash(key) & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == key) {
+                    return indices[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        long[] waitingOn(int symbol) {
+            return waiting.get(symbol);
+        }
+
+        long leoItem(int symbol) {
+            Long topmost = leoItems.get(symbol);
+            return topmost == null ? NO_LEO_ITEM : topmost;
+        }
+
+        // Indexes the items by the non-terminal after their dot. The set is complete at this point and
+        // the Leo items of earlier sets are known, so each chain is resolved without recursion.
+        void close(boolean useLeo) {
+            Map<Integer, List<Long>> grouped = new HashMap<>();
+            for (int index = 0; index < size; index++) {
+                int next = dottedNext[dotted(items[index])];
+                if (next >= 0 && nonTerminals.get(next)) {
+                    grouped.computeIfAbsent(next, key -> new ArrayList<>()).add(items[index]);
+                }
+            }
+
+            waiting = new HashMap<>();
+            leoItems = useLeo ? new HashMap<>() : Collections.emptyMap();
+            for (Map.Entry<Integer, List<Long>> entry : grouped.entrySet()) {
+                List<Long> list = entry.getValue();
+                long[] array = new long[list.size()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = list.get(i);
+                }
+                waiting.put(entry.getKey(), array);
+
+                // Set 0 also waits on the start symbol for the final completion, so it is never deterministic
+                boolean startWaits = position == 0 && entry.getKey() == startSymbol;
+                if (useLeo && array.length == 1 && !startWaits) {
+                    int dotted = dotted(array[0]);
+                    int origin = origin(array[0]);
+                    // Penultimate: the waited-on symbol is the last one of the rule
+                    if (dottedNext[dotted + 1] < 0) {
+                        long advanced = item(dotted + 1, origin);
+                        long topmost = NO_LEO_ITEM;
+                        if (origin < position) {
+                            topmost = sets[origin].leoItem(ruleLhs[dottedRule[dotted]]);
+                        }
+                        leoItems.put(entry.getKey(), topmost == NO_LEO_ITEM ? advanced : topmost);
+                    }
+                }
+            }
+        }
+
+        private void rehash() {
+            long[] oldTable = table;
+            int[] oldIndices = indices;
+            table = new long[oldTable.length * 2];
+            indices = new int[table.length];
+            int mask = table.length - 1;
+            for (int i = 0; i < oldTable.length; i++) {
+                if (oldTable[i] != 0) {
+                    int slot = hash(oldTable[i]) & mask;
+                    while (table[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[slot] = oldTable[i];
+                    indices[slot] = oldIndices[i];
+                }
+            }
+        }
+    }
+
+    // Rebuilds one derivation from the item sets. Every item was added because of an item earlier in
+    // the worklist (or in an earlier set), so following those causes never cycles and needs no
+    // backtracking: a scan steps back over a terminal, a completion over the child completed earlier in
+    // the same set, and a skipped nullable symbol gets a fixed ε derivation. The walk uses an explicit
+    // stack, so left- or right-recursive inputs of any length do not overflow the call stack.
+    private final class TreeBuilder {
+        private final List<String> input;
+        private final ItemSet[] sets;
+        private final Map<Integer, ParseTree> epsilonTrees = new HashMap<>();
+
+        TreeBuilder(List<String> input, ItemSet[] sets) {
+            this.input = input;
+            this.sets = sets;
+            buildEpsilonTrees();
+        }
+
+        ParseTree build() {
+            int end = input.size();
+            ItemSet last = sets[end];
+            for (int index = 0; index < last.size; index++) {
+                long item = last.items[index];
+                int dotted = dotted(item);
+                if (origin(item) == 0 && dottedNext[dotted] < 0 && ruleLhs[dottedRule[dotted]] == startSymbol) {
+                    return build(end, index);
+                }
+            }
+            return null;
+        }
+
+        private ParseTree build(int end, int index) {
+            List<Node> stack = new ArrayList<>();
+            stack.add(new Node(end, index));
+            ParseTree finished = null;
+
+            while (!stack.isEmpty()) {
+                Node node = stack.get(stack.size() - 1);
+                if (finished != null) {
+                    node.children[node.dot] = finished;
+                    finished = null;
+                }
+                if (node.dot == 0) {
+                    stack.remove(stack.size() - 1);
+                    finished = node.toTree();
+                    continue;
+                }
+
+                long item = sets[node.set].items[node.index];
+                int dotted = dotted(item);
+                int origin = origin(item);
+                int symbol = ruleRhs[dottedRule[dotted]][node.dot - 1];
+                long prefix = item(dotted - 1, origin);
+                node.dot--;
+
+                if (!nonTerminals.get(symbol)) {
+                    node.children[node.dot] = new ParseTree(input.get(node.set - 1));
+                    node.set--;
+                    node.index = sets[node.set].indexOf(prefix);
+                    continue;
+                }
+
+                int skipped = sets[node.set].indexOf(prefix);
+                if (nullable.get(symbol) && skipped >= 0 && skipped < node.index) {
+                    node.children[node.dot] = epsilonTrees.get(symbol);
+                    node.index = skipped;
+                    continue;
+                }
+
+                int[] cause = findCompletion(node.set, node.index, symbol, prefix);
+                node.set = cause[0];
+                node.index = cause[1];
+                stack.add(new Node(cause[2], cause[3]));
+            }
+
+            return finished;
+        }
+
+        // {set, index} of the prefix item and {set, index} of the completed child that advanced it
+        private int[] findCompletion(int end, int before, int symbol, long prefix) {
+            ItemSet set = sets[end];
+            for (int index = 0; index < before; index++) {
+                long item = set.items[index];
+                int dotted = dotted(item);
+                int middle = origin(item);
+                if (dottedNext[dotted] < 0 && middle < end && ruleLhs[dottedRule[dotted]] == symbol) {
+                    int prefixIndex = sets[middle].indexOf(prefix);
+                    if (prefixIndex >= 0) {
+                        return new int[]{middle, prefixIndex, end, index};
+                    }
+                }
+            }
+            throw new IllegalStateException("No completion found for " + symbols.name(symbol) + " at " + end);
+        }
+
+        // A fixed derivation of ε for every nullable non-terminal, found in the order they become nullable
+        private void buildEpsilonTrees() {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int rule = 0; rule < ruleRhs.length; rule++) {
+                    if (epsilonTrees.containsKey(ruleLhs[rule])) {
+                        continue;
+                    }
+                    List<ParseTree> children = new ArrayList<>();
+                    for (int symbol : ruleRhs[rule]) {
+                        ParseTree child = epsilonTrees.get(symbol);
+                        if (child == null) {
+                            children = null;
+                            break;
+                        }
+                        children.add(child);
+                    }
+                    if (children != null) {
+                        if (children.isEmpty()) {
+                            children.add(new ParseTree(EPSILON));
+                        }
+                        epsilonTrees.put(ruleLhs[rule], new ParseTree(symbols.name(ruleLhs[rule]), children));
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        // A completed item being taken apart from its last symbol backwards
+        private final class Node {
+            private final int lhs;
+            private final ParseTree[] children;
+            private int set;
+            private int index;
+            private int dot;
+
+            Node(int set, int index) {
+                int rule = dottedRule[dotted(sets[set].items[index])];
+                this.lhs = ruleLhs[rule];
+                this.children = new ParseTree[ruleRhs[rule].length];
+                this.set = set;
+                this.index = index;
+                this.dot = children.length;
+            }
+
+            ParseTree toTree() {
+                if (children.length == 0) {
+                    return new ParseTree(symbols.name(lhs), Arrays.asList(new ParseTree(EPSILON)));
+                }
+                return new ParseTree(symbols.name(lhs), Arrays.asList(children));
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
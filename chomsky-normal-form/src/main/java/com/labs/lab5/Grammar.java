@@ -1,36 +1,50 @@
 package com.labs.lab5;
+import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
 
 
 public class Grammar {
-    private Set<String> nonTerminals;
-    private Set<String> terminals;
-    private Map<String, Set<String>> productionRules;
-    private String startSymbol;
+    private static final String EPSILON = "ε";
+    private static final int[] EMPTY_PRODUCTION = new int[0];
+    private static final int[][] NO_PRODUCTIONS = new int[0][];
+    // removeNullProductions refuses to emit more productions than this, see projectedNullExpansion
+    public static final long DEFAULT_MAX_NULL_EXPANSION = 1_000_000;
+    // Rows per task when a pass runs on a ForkJoinPool
+    private static final int ROW_TASK_THRESHOLD = 256;
+
+    // Symbols are interned to ints and every right-hand side is an int array over the symbol table,
+    // the empty array being the ε production. productions[A] holds the rules of non-terminal A,
+    // or null when A has no rule entry. Names only appear at the API boundary.
+    // None of these arrays or sets is modified after construction, so a transformation shares every
+    // rule row, right-hand side and symbol set it does not change with the grammar it came from.
+    private final SymbolTable symbols;
+    private final BitSet nonTerminals;
+    private final BitSet terminals;
+    private final int[][][] productions;
+    private final int startSymbol;
 
 
     public Grammar(Set<String> nonTerminals, Set<String> terminals, Map<String, Set<String>> productionRules, String startSymbol) {
-        this.nonTerminals = new HashSet<>(nonTerminals);
-        this.terminals = new HashSet<>(terminals);
-        this.productionRules = new HashMap<>();
+        this.symbols = new SymbolTable();
+        this.nonTerminals = new BitSet();
+        this.terminals = new BitSet();
 
-        // Deep copy of the production rules
-        for (Map.Entry<String, Set<String>> entry : productionRules.entrySet()) {
-            this.productionRules.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        for (String nonTerminal : nonTerminals) {
+            this.nonTerminals.set(symbols.intern(nonTerminal));
+        }
+        for (String terminal : terminals) {
+            this.terminals.set(symbols.intern(terminal));
         }
 
         // Verify start symbol is a non-terminal
         if (!nonTerminals.contains(startSymbol)) {
             throw new IllegalArgumentException("Start symbol must be a non-terminal");
         }
-        this.startSymbol = startSymbol;
-
-        validateGrammar();
-    }
-
+        this.startSymbol = symbols.id(startSymbol);
 
-
-    private void validateGrammar() {
         // Check if all keys in productionRules are in nonTerminals
         for (String nonTerminal : productionRules.keySet()) {
             if (!nonTerminals.contains(nonTerminal)) {
@@ -38,138 +52,282 @@ public class Grammar {
             }
         }
 
-        // Check if all symbols in productions are either terminals or non-terminals
+        this.productions = new int[symbols.size()][][];
         for (Map.Entry<String, Set<String>> entry : productionRules.entrySet()) {
+            List<int[]> parsed = new ArrayList<>();
             for (String production : entry.getValue()) {
-                if (production.equals("ε")) continue; // Empty production (epsilon) is allowed
-
-                String[] symbols = production.split(" ");
-                for (String symbol : symbols) {
-                    if (!terminals.contains(symbol) && !nonTerminals.contains(symbol) && !symbol.isEmpty()) {
-                        throw new IllegalArgumentException(
-                                "Production contains undefined symbol: " + symbol +
-                                        " in rule: " + entry.getKey() + " -> " + production
-                        );
+                parsed.add(parseProduction(entry.getKey(), production));
+            }
+            this.productions[symbols.id(entry.getKey())] = distinct(parsed);
+        }
+    }
+
+    // Trusted path used by the transformations. Their output only refers to symbols of a grammar that
+    // was already validated, so nothing is copied or checked again apart from the start symbol.
+    private Grammar(SymbolTable symbols, BitSet nonTerminals, BitSet terminals, int[][][] productions, int startSymbol) {
+        this.symbols = symbols;
+        this.nonTerminals = nonTerminals;
+        this.terminals = terminals;
+        this.productions = productions;
+
+        // Verify start symbol is a non-terminal
+        if (!nonTerminals.get(startSymbol)) {
+            throw new IllegalArgumentException("Start symbol must be a non-terminal");
+        }
+        this.startSymbol = startSymbol;
+    }
+
+
+    // Builds a grammar from already interned data (GrammarReader, GrammarSnapshot). The checks are the
+    // ones the public constructor makes, done in one linear pass over the ints.
+    static Grammar fromInterned(SymbolTable symbols, BitSet nonTerminals, BitSet terminals,
+                                int[][][] productions, int startSymbol) {
+        if (nonTerminals.intersects(terminals)) {
+            BitSet both = (BitSet) nonTerminals.clone();
+            both.and(terminals);
+            throw new IllegalArgumentException("Symbol is both a terminal and a non-terminal: " + symbols.name(both.nextSetBit(0)));
+        }
+        if (startSymbol < 0 || startSymbol >= symbols.size()) {
+            throw new IllegalArgumentException("Start symbol must be a non-terminal");
+        }
+        for (int lhs = 0; lhs < productions.length; lhs++) {
+            if (productions[lhs] == null) continue;
+            if (lhs >= symbols.size() || !nonTerminals.get(lhs)) {
+                throw new IllegalArgumentException("Production rule contains undefined non-terminal: "
+                        + (lhs < symbols.size() ? symbols.name(lhs) : "#" + lhs));
+            }
+            for (int[] production : productions[lhs]) {
+                for (int symbol : production) {
+                    if (symbol < 0 || symbol >= symbols.size() || (!terminals.get(symbol) && !nonTerminals.get(symbol))) {
+                        throw new IllegalArgumentException("Production contains undefined symbol: "
+                                + (symbol >= 0 && symbol < symbols.size() ? symbols.name(symbol) : "#" + symbol)
+                                + " in rule of " + symbols.name(lhs));
                     }
                 }
             }
         }
+        return new Grammar(symbols, nonTerminals, terminals, ensureCapacity(productions, symbols.size()), startSymbol);
+    }
+
+    public Grammar normalize() {
+        return normalize(new NormalizationOptions());
+    }
+
+    // Runs the enabled passes in the usual order. Every step goes through the trusted constructor
+    // and shares unchanged rules, so intermediate grammars cost only what their pass changed.
+    // With options.isParallel() the per-non-terminal work of each pass runs on the options' pool.
+    public Grammar normalize(NormalizationOptions options) {
+        ForkJoinPool pool = options.isParallel() ? options.getPool() : null;
+        Grammar grammar = this;
+        if (options.isRemoveNullProductions()) {
+            long limit = options.getMaxNullExpansion();
+            if (options.isBinarizeBeforeNullRemoval()
+                    || grammar.projectedNullExpansion().compareTo(BigInteger.valueOf(limit)) > 0) {
+                grammar = grammar.binarizeNullableProductions().removeNullProductions(Long.MAX_VALUE, pool);
+            } else {
+                grammar = grammar.removeNullProductions(limit, pool);
+            }
+        }
+        if (options.isRemoveUnitProductions()) {
+            grammar = grammar.removeUnitProductions(pool);
+        }
+        if (options.isRemoveNonProductiveSymbols()) {
+            grammar = grammar.removeNonProductiveSymbols(pool);
+        }
+        if (options.isRemoveInaccessibleSymbols()) {
+            grammar = grammar.removeInaccessibleSymbols(pool);
+        }
+        if (options.isChomskyNormalForm()) {
+            grammar = grammar.toChomskyNormalForm(pool);
+        }
+        return grammar;
+    }
+
+
+    // Splits on single spaces without a regex and resolves every symbol to its id
+    private int[] parseProduction(String lhs, String production) {
+        if (production.equals(EPSILON)) {
+            return EMPTY_PRODUCTION; // Empty production (epsilon) is allowed
+        }
+
+        int[] buffer = new int[8];
+        int length = 0;
+        int start = 0;
+        while (start <= production.length()) {
+            int end = production.indexOf(' ', start);
+            if (end < 0) {
+                end = production.length();
+            }
+            if (end > start) {
+                String symbol = production.substring(start, end);
+                int id = symbols.id(symbol);
+                if (id < 0 || (!terminals.get(id) && !nonTerminals.get(id))) {
+                    throw new IllegalArgumentException(
+                            "Production contains undefined symbol: " + symbol +
+                                    " in rule: " + lhs + " -> " + production
+                    );
+                }
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                buffer[length++] = id;
+            }
+            start = end + 1;
+        }
+        return length == 0 ? EMPTY_PRODUCTION : Arrays.copyOf(buffer, length);
     }
 
 
     public Grammar removeNullProductions() {
-        // Step 1: Find all nullable non-terminals
-        Set<String> nullableNonTerminals = findNullableNonTerminals();
+        return removeNullProductions(DEFAULT_MAX_NULL_EXPANSION);
+    }
 
-        // Step 2 & 3: Add new productions by omitting nullable non-terminals
-        Map<String, Set<String>> newProductionRules = new HashMap<>();
+    // A production with k nullable symbols turns into up to 2^k productions, so the projected size is
+    // checked before any of them is built
+    public Grammar removeNullProductions(long maxProductions) {
+        return removeNullProductions(maxProductions, null);
+    }
 
-        for (Map.Entry<String, Set<String>> entry : productionRules.entrySet()) {
-            String lhs = entry.getKey();
-            Set<String> newProductions = new HashSet<>();
+    private Grammar removeNullProductions(long maxProductions, ForkJoinPool pool) {
+        BigInteger projected = projectedNullExpansion();
+        if (projected.compareTo(BigInteger.valueOf(maxProductions)) > 0) {
+            throw new IllegalArgumentException("Removing null productions would create " + projected
+                    + " productions (limit " + maxProductions + "), use removeNullProductionsBinarized instead");
+        }
 
-            for (String production : entry.getValue()) {
-                if (production.equals("ε")) continue; // Skip the empty production for now
+        // Step 1: Find all nullable non-terminals
+        BitSet nullableNonTerminals = findNullableNonTerminals();
 
-                // Generate all possible new productions by omitting nullable non-terminals
-                List<String> symbols = Arrays.asList(production.split(" "));
-                List<String> generatedProductions = generateAllPossibleProductions(symbols, nullableNonTerminals);
+        // Step 2 & 3: Add new productions by omitting nullable non-terminals
+        int[][][] newProductionRules = mapRows(nonTerminals, productions.length, pool, lhs -> {
+            if (lhs >= productions.length || productions[lhs] == null) return null;
 
-                newProductions.addAll(generatedProductions);
+            // Rules without ε and without nullable symbols come out unchanged
+            if (!needsNullExpansion(productions[lhs], nullableNonTerminals)) {
+                return productions[lhs];
             }
 
-            // If the original rule had an empty production and we didn't add any empty production
-            // from the generation process, we need to keep the original empty production
-            if (entry.getValue().contains("ε") && !nullableNonTerminals.contains(lhs)) {
-                newProductions.add("ε");
-            }
+            List<int[]> newProductions = new ArrayList<>();
+            for (int[] production : productions[lhs]) {
+                if (production.length == 0) continue; // Skip the empty production
 
-            newProductionRules.put(lhs, newProductions);
-        }
+                // Generate all possible new productions by omitting nullable non-terminals
+                generateProductionsHelper(production, nullableNonTerminals, 0, new int[production.length], 0, newProductions);
+            }
 
-        // Step 4: Remove all direct null productions unless the start symbol can derive empty
-        for (Map.Entry<String, Set<String>> entry : newProductionRules.entrySet()) {
-            entry.getValue().removeIf(production -> production.equals("ε"));
-        }
+            // Step 4: Direct null productions are not kept, so the helper never emits them
+            return distinct(newProductions);
+        });
 
-        return new Grammar(nonTerminals, terminals, newProductionRules, startSymbol);
+        return new Grammar(symbols, nonTerminals, terminals, newProductionRules, startSymbol);
     }
 
 
-    private Set<String> findNullableNonTerminals() {
-        Set<String> nullableNonTerminals = new HashSet<>();
-        boolean changed;
-
-        // First, find all non-terminals that directly derive empty string
-        for (Map.Entry<String, Set<String>> entry : productionRules.entrySet()) {
-            if (entry.getValue().contains("ε")) {
-                nullableNonTerminals.add(entry.getKey());
+    // Number of productions removeNullProductions would generate before removing duplicates
+    public BigInteger projectedNullExpansion() {
+        BitSet nullableNonTerminals = findNullableNonTerminals();
+        BigInteger total = BigInteger.ZERO;
+        for (int lhs = 0; lhs < productions.length; lhs++) {
+            for (int[] production : rules(lhs)) {
+                if (production.length == 0) continue;
+                int nullableCount = 0;
+                for (int symbol : production) {
+                    if (nullableNonTerminals.get(symbol)) {
+                        nullableCount++;
+                    }
+                }
+                // Every subset of the nullable symbols may be left out, except all symbols at once
+                BigInteger variants = BigInteger.ONE.shiftLeft(nullableCount);
+                total = total.add(nullableCount == production.length ? variants.subtract(BigInteger.ONE) : variants);
             }
         }
+        return total;
+    }
 
-        // Then, iteratively find more nullable non-terminals
-        do {
-            changed = false;
+    // BIN before DEL: productions longer than two symbols that contain a nullable symbol are first
+    // split into chains of binary rules, so ε-elimination emits at most three productions per rule
+    // and the result stays linear in the size of the grammar. The helper non-terminals are named
+    // like the ones toChomskyNormalForm introduces for long productions.
+    public Grammar removeNullProductionsBinarized() {
+        return binarizeNullableProductions().removeNullProductions(Long.MAX_VALUE);
+    }
 
-            for (Map.Entry<String, Set<String>> entry : productionRules.entrySet()) {
-                if (nullableNonTerminals.contains(entry.getKey())) continue;
+    private Grammar binarizeNullableProductions() {
+        BitSet nullableNonTerminals = findNullableNonTerminals();
+        SymbolTable newSymbols = symbols.copy();
+        BitSet newNonTerminals = (BitSet) nonTerminals.clone();
+        int[][][] newProductionRules = Arrays.copyOf(productions, Math.max(productions.length, symbols.size()));
 
-                for (String production : entry.getValue()) {
-                    if (production.equals("ε")) continue;
+        // Chains of the same suffix share their helper non-terminals, keyed like in toChomskyNormalForm
+        Map<Long, Integer> suffixMap = new HashMap<>();
+        int helperCounter = 1;
 
-                    String[] symbols = production.split(" ");
-                    boolean allNullable = true;
+        for (int lhs = 0; lhs < productions.length; lhs++) {
+            if (productions[lhs] == null) continue;
+            List<int[]> newProductions = new ArrayList<>();
+            boolean split = false;
 
-                    for (String symbol : symbols) {
-                        if (!nullableNonTerminals.contains(symbol)) {
-                            allNullable = false;
-                            break;
+            for (int[] production : productions[lhs]) {
+                if (production.length <= 2 || !containsAny(production, nullableNonTerminals)) {
+                    newProductions.add(production);
+                    continue;
+                }
+                split = true;
+
+                // A -> B1 B2 ... Bn becomes A -> B1 Y1, Y1 -> B2 Y2, ..., Yn-2 -> Bn-1 Bn
+                int next = production[production.length - 1];
+                for (int i = production.length - 2; i >= 1; i--) {
+                    long key = ((long) production[i] << 32) | (next & 0xFFFFFFFFL);
+                    Integer helper = suffixMap.get(key);
+                    if (helper == null) {
+                        while (newSymbols.contains("Y" + helperCounter)) {
+                            helperCounter++;
                         }
+                        helper = newSymbols.intern("Y" + helperCounter++);
+                        suffixMap.put(key, helper);
+                        newNonTerminals.set(helper);
+                        newProductionRules = ensureCapacity(newProductionRules, helper + 1);
+                        newProductionRules[helper] = new int[][]{{production[i], next}};
                     }
-
-                    if (allNullable) {
-                        nullableNonTerminals.add(entry.getKey());
-                        changed = true;
-                        break;
-                    }
+                    next = helper;
                 }
+                newProductions.add(new int[]{production[0], next});
             }
-        } while (changed);
 
-        return nullableNonTerminals;
-    }
+            if (split) {
+                newProductionRules[lhs] = distinct(newProductions);
+            }
+        }
 
+        newProductionRules = ensureCapacity(newProductionRules, newSymbols.size());
+        return new Grammar(newSymbols, newNonTerminals, terminals, newProductionRules, startSymbol);
+    }
 
-    private List<String> generateAllPossibleProductions(List<String> symbols, Set<String> nullableNonTerminals) {
-        List<String> result = new ArrayList<>();
-        generateProductionsHelper(symbols, nullableNonTerminals, 0, new ArrayList<>(), result);
-        return result;
+    private BitSet findNullableNonTerminals() {
+        // A production is nullable once every symbol in it is nullable, terminals never are
+        return findDerivingNonTerminals(false);
     }
 
 
-    private void generateProductionsHelper(List<String> symbols, Set<String> nullableNonTerminals,
-                                           int index, List<String> current, List<String> result) {
-        if (index == symbols.size()) {
-            // Avoid adding empty production here, handled separately
-            if (!current.isEmpty()) {
-                result.add(String.join(" ", current));
-            } else {
-                // Add "ε" for empty production instead of empty string
-                result.add("ε");
+    private void generateProductionsHelper(int[] symbols, BitSet nullableNonTerminals,
+                                           int index, int[] current, int size, List<int[]> result) {
+        if (index == symbols.length) {
+            // The all-omitted (empty) production is dropped, null productions are removed
+            if (size > 0) {
+                result.add(Arrays.copyOf(current, size));
             }
             return;
         }
 
-        String symbol = symbols.get(index);
+        int symbol = symbols[index];
 
         // Include the current symbol
-        current.add(symbol);
-        generateProductionsHelper(symbols, nullableNonTerminals, index + 1, current, result);
-        current.remove(current.size() - 1);
+        current[size] = symbol;
+        generateProductionsHelper(symbols, nullableNonTerminals, index + 1, current, size + 1, result);
 
         // Exclude the current symbol if it's nullable
-        if (nullableNonTerminals.contains(symbol)) {
-            generateProductionsHelper(symbols, nullableNonTerminals, index + 1, current, result);
+        if (nullableNonTerminals.get(symbol)) {
+            generateProductionsHelper(symbols, nullableNonTerminals, index + 1, current, size, result);
         }
     }
 
@@ -177,12 +335,12 @@ public class Grammar {
     public String toString() {
         StringBuilder sb = new StringBuilder();
 
-        sb.append("Start Symbol: ").append(startSymbol).append("\n");
-        sb.append("Non-terminals: ").append(nonTerminals).append("\n");
-        sb.append("Terminals: ").append(terminals).append("\n");
+        sb.append("Start Symbol: ").append(getStartSymbol()).append("\n");
+        sb.append("Non-terminals: ").append(getNonTerminals()).append("\n");
+        sb.append("Terminals: ").append(getTerminals()).append("\n");
         sb.append("Production Rules:\n");
 
-        for (Map.Entry<String, Set<String>> entry : productionRules.entrySet()) {
+        for (Map.Entry<String, Set<String>> entry : getProductionRules().entrySet()) {
             sb.append(entry.getKey()).append(" -> ");
             boolean first = true;
             for (String production : entry.getValue()) {
@@ -199,66 +357,54 @@ public class Grammar {
     }
 
     public Set<String> getNonTerminals() {
-        return new HashSet<>(nonTerminals);
+        return names(nonTerminals);
     }
 
 
     public Set<String> getTerminals() {
-        return new HashSet<>(terminals);
+        return names(terminals);
     }
 
     public Map<String, Set<String>> getProductionRules() {
         Map<String, Set<String>> copy = new HashMap<>();
-        for (Map.Entry<String, Set<String>> entry : productionRules.entrySet()) {
-            copy.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        for (int lhs = 0; lhs < productions.length; lhs++) {
+            if (productions[lhs] == null) continue;
+            Set<String> rules = new HashSet<>();
+            for (int[] production : productions[lhs]) {
+                rules.add(productionToString(production));
+            }
+            copy.put(symbols.name(lhs), rules);
         }
         return copy;
     }
 
     public String getStartSymbol() {
-        return startSymbol;
+        return symbols.name(startSymbol);
     }
 
     public Grammar removeInaccessibleSymbols() {
-        // Step 1 & 2: Find all accessible symbols
-        Set<String> accessibleSymbols = findAccessibleSymbols();
-
-        // Step 3: Remove inaccessible symbols and their rules
-        Set<String> newNonTerminals = new HashSet<>();
-        Set<String> newTerminals = new HashSet<>();
-        Map<String, Set<String>> newProductionRules = new HashMap<>();
+        return removeInaccessibleSymbols(null);
+    }
 
-        // Keep only accessible non-terminals
-        for (String nonTerminal : nonTerminals) {
-            if (accessibleSymbols.contains(nonTerminal)) {
-                newNonTerminals.add(nonTerminal);
-            }
-        }
+    private Grammar removeInaccessibleSymbols(ForkJoinPool pool) {
+        // Step 1 & 2: Find all accessible symbols
+        BitSet accessibleSymbols = findAccessibleSymbols();
 
-        // Keep only accessible terminals
-        for (String terminal : terminals) {
-            if (accessibleSymbols.contains(terminal)) {
-                newTerminals.add(terminal);
-            }
-        }
+        // Step 3: Keep only accessible non-terminals and terminals
+        BitSet newNonTerminals = (BitSet) nonTerminals.clone();
+        newNonTerminals.and(accessibleSymbols);
+        BitSet newTerminals = (BitSet) terminals.clone();
+        newTerminals.and(accessibleSymbols);
 
         // Keep only production rules for accessible non-terminals
-        for (String nonTerminal : newNonTerminals) {
-            Set<String> productions = productionRules.getOrDefault(nonTerminal, new HashSet<>());
-            Set<String> newProductions = new HashSet<>();
+        int[][][] newProductionRules = mapRows(newNonTerminals, productions.length, pool, nonTerminal -> {
+            List<int[]> newProductions = new ArrayList<>();
 
             // Keep only productions with accessible symbols
-            for (String production : productions) {
-                if (production.equals("ε")) {
-                    newProductions.add(production);
-                    continue;
-                }
-
-                String[] symbols = production.split(" ");
+            for (int[] production : rules(nonTerminal)) {
                 boolean allSymbolsAccessible = true;
-
-                for (String symbol : symbols) {
-                    if (!accessibleSymbols.contains(symbol)) {
+                for (int symbol : production) {
+                    if (!accessibleSymbols.get(symbol)) {
                         allSymbolsAccessible = false;
                         break;
                     }
@@ -269,301 +415,323 @@ public class Grammar {
                 }
             }
 
-            if (!newProductions.isEmpty()) {
-                newProductionRules.put(nonTerminal, newProductions);
-            }
-        }
+            return newProductions.isEmpty() ? null : shareIfUnchanged(productions[nonTerminal], newProductions);
+        });
 
-        return new Grammar(newNonTerminals, newTerminals, newProductionRules, startSymbol);
+        return new Grammar(symbols, newNonTerminals, newTerminals, newProductionRules, startSymbol);
     }
 
-    private Set<String> findAccessibleSymbols() {
-        Set<String> accessibleSymbols = new HashSet<>();
-        Set<String> accessibleNonTerminals = new HashSet<>();
+    private BitSet findAccessibleSymbols() {
+        BitSet accessibleSymbols = new BitSet();
+        int[] worklist = new int[symbols.size()];
+        int pending = 0;
 
         // Start with the start symbol
-        accessibleSymbols.add(startSymbol);
-        accessibleNonTerminals.add(startSymbol);
-
-        boolean changed;
-        do {
-            changed = false;
-            Set<String> newAccessibleSymbols = new HashSet<>();
-
-            // For each accessible non-terminal
-            for (String nonTerminal : accessibleNonTerminals) {
-                Set<String> productions = productionRules.getOrDefault(nonTerminal, new HashSet<>());
-
-                // For each production rule
-                for (String production : productions) {
-                    if (production.equals("ε")) continue;
-
-                    // For each symbol in the production
-                    String[] symbols = production.split(" ");
-                    for (String symbol : symbols) {
-                        if (!accessibleSymbols.contains(symbol)) {
-                            newAccessibleSymbols.add(symbol);
-                            changed = true;
-
-                            // If the symbol is a non-terminal, add it to accessible non-terminals
-                            if (nonTerminals.contains(symbol)) {
-                                accessibleNonTerminals.add(symbol);
-                            }
-                        }
+        accessibleSymbols.set(startSymbol);
+        worklist[pending++] = startSymbol;
+
+        // Every symbol is queued once, when it first becomes accessible
+        while (pending > 0) {
+            int nonTerminal = worklist[--pending];
+            if (!nonTerminals.get(nonTerminal)) continue;
+
+            for (int[] production : rules(nonTerminal)) {
+                for (int symbol : production) {
+                    if (!accessibleSymbols.get(symbol)) {
+                        accessibleSymbols.set(symbol);
+                        worklist[pending++] = symbol;
                     }
                 }
             }
-
-            // Add all newly found accessible symbols
-            accessibleSymbols.addAll(newAccessibleSymbols);
-
-        } while (changed);
+        }
 
         return accessibleSymbols;
     }
 
     public Grammar toChomskyNormalForm() {
-        // Create copies to modify
-        Set<String> newNonTerminals = new HashSet<>(nonTerminals);
-        Set<String> newTerminals = new HashSet<>(terminals);
-        Map<String, Set<String>> newProductionRules = new HashMap<>();
+        return toChomskyNormalForm(null);
+    }
 
-        // Deep copy of the production rules
-        for (Map.Entry<String, Set<String>> entry : productionRules.entrySet()) {
-            newProductionRules.put(entry.getKey(), new HashSet<>(entry.getValue()));
+    private Grammar toChomskyNormalForm(ForkJoinPool pool) {
+        // Helper symbols are interned into a private copy of the table
+        SymbolTable newSymbols = symbols.copy();
+        BitSet newNonTerminals = (BitSet) nonTerminals.clone();
+        int[][][] newProductionRules = Arrays.copyOf(productions, Math.max(productions.length, symbols.size()));
+
+        // Step 1: Terminals inside productions of two or more symbols get a proxy X -> terminal.
+        // Proxies are only created for terminals that actually occur there.
+        BitSet proxied = new BitSet();
+        for (int lhs = 0; lhs < productions.length; lhs++) {
+            for (int[] production : rules(lhs)) {
+                if (production.length < 2) continue;
+                for (int symbol : production) {
+                    if (terminals.get(symbol)) {
+                        proxied.set(symbol);
+                    }
+                }
+            }
         }
 
-        // Step 1: Replace terminals in mixed productions
-        // For each production of form A -> α where α contains both terminals and non-terminals
         int terminalNonTerminalCounter = 1;
-        Map<String, String> terminalToNonTerminal = new HashMap<>();
-
-        // First pass: create new non-terminals for terminals
-        for (String terminal : terminals) {
-            String newNonTerminal = "X" + terminalNonTerminalCounter++;
-            terminalToNonTerminal.put(terminal, newNonTerminal);
+        int[] terminalToNonTerminal = new int[symbols.size()];
+        for (int terminal = proxied.nextSetBit(0); terminal >= 0; terminal = proxied.nextSetBit(terminal + 1)) {
+            while (newSymbols.contains("X" + terminalNonTerminalCounter)) {
+                terminalNonTerminalCounter++;
+            }
+            int newNonTerminal = newSymbols.intern("X" + terminalNonTerminalCounter++);
+            terminalToNonTerminal[terminal] = newNonTerminal;
 
-            // Add a new production rule X -> terminal
-            Set<String> newProduction = new HashSet<>();
-            newProduction.add(terminal);
-            newProductionRules.put(newNonTerminal, newProduction);
-            newNonTerminals.add(newNonTerminal);
+            newProductionRules = ensureCapacity(newProductionRules, newNonTerminal + 1);
+            newProductionRules[newNonTerminal] = new int[][]{{terminal}};
+            newNonTerminals.set(newNonTerminal);
         }
 
-        // Second pass: replace terminals in mixed productions
-        Map<String, Set<String>> updatedRules = new HashMap<>();
+        // Substitute the proxies per rule. Rows are independent, only the helper naming below is not.
+        int[][][] substituted = mapRows(nonTerminals, productions.length, pool, lhs -> {
+            int[][] row = productions[lhs];
+            if (row == null) return null;
+            int[][] result = row;
+            for (int p = 0; p < row.length; p++) {
+                int[] production = row[p];
+                if (production.length < 2) continue;
+                int[] replaced = production;
+                for (int i = 0; i < production.length; i++) {
+                    if (terminals.get(production[i])) {
+                        if (replaced == production) {
+                            replaced = production.clone();
+                        }
+                        replaced[i] = terminalToNonTerminal[production[i]];
+                    }
+                }
+                if (replaced != production) {
+                    if (result == row) {
+                        result = row.clone();
+                    }
+                    result[p] = replaced;
+                }
+            }
+            return result;
+        });
+
+        // Step 2: Break longer productions into binary productions in one pass.
+        // A -> B1 B2 ... Bn becomes A -> B1 Y, where Y stands for the suffix B2 ... Bn. Suffixes are
+        // hash-consed from the right as (first symbol, helper of the rest) pairs, so every suffix shared
+        // by any two productions, of the same rule or not, gets exactly one helper. This runs in lhs
+        // order, so helper names do not depend on how the rows above were scheduled.
+        Map<Long, Integer> suffixHelpers = new HashMap<>();
+        int longProductionCounter = 1;
 
-        for (Map.Entry<String, Set<String>> entry : newProductionRules.entrySet()) {
-            String lhs = entry.getKey();
-            Set<String> productions = entry.getValue();
-            Set<String> modifiedProductions = new HashSet<>();
+        for (int lhs = 0; lhs < productions.length; lhs++) {
+            if (productions[lhs] == null) continue;
+            List<int[]> newProductions = new ArrayList<>();
+            boolean changed = substituted[lhs] != productions[lhs];
 
-            for (String production : productions) {
-                // Skip if this is a production X -> terminal (added earlier)
-                if (!production.contains(" ") && terminals.contains(production)) {
-                    modifiedProductions.add(production);
+            for (int[] replaced : substituted[lhs]) {
+                // Productions of one or two symbols (terminals, the remaining units, pairs) are kept as they are
+                if (replaced.length <= 2) {
+                    newProductions.add(replaced);
                     continue;
                 }
 
-                String[] symbols = production.split(" ");
-                StringBuilder modifiedProduction = new StringBuilder();
-                boolean modified = false;
-
-                // Check if we need to replace any terminal in a mixed production
-                for (int i = 0; i < symbols.length; i++) {
-                    String symbol = symbols[i];
-
-                    // If this is a terminal in a production with multiple symbols
-                    if (terminals.contains(symbol) && symbols.length > 1) {
-                        modifiedProduction.append(terminalToNonTerminal.get(symbol));
-                        modified = true;
-                    } else {
-                        modifiedProduction.append(symbol);
-                    }
-
-                    if (i < symbols.length - 1) {
-                        modifiedProduction.append(" ");
+                changed = true;
+                int rest = replaced[replaced.length - 1];
+                for (int i = replaced.length - 2; i >= 1; i--) {
+                    long key = ((long) replaced[i] << 32) | (rest & 0xFFFFFFFFL);
+                    Integer helper = suffixHelpers.get(key);
+                    if (helper == null) {
+                        while (newSymbols.contains("Y" + longProductionCounter)) {
+                            longProductionCounter++;
+                        }
+                        helper = newSymbols.intern("Y" + longProductionCounter++);
+                        suffixHelpers.put(key, helper);
+                        newNonTerminals.set(helper);
+                        newProductionRules = ensureCapacity(newProductionRules, helper + 1);
+                        newProductionRules[helper] = new int[][]{{replaced[i], rest}};
                     }
+                    rest = helper;
                 }
-
-                if (modified) {
-                    modifiedProductions.add(modifiedProduction.toString());
-                } else {
-                    modifiedProductions.add(production);
-                }
+                newProductions.add(new int[]{replaced[0], rest});
             }
 
-            if (!modifiedProductions.isEmpty()) {
-                updatedRules.put(lhs, modifiedProductions);
+            if (newProductions.isEmpty()) {
+                newProductionRules[lhs] = null; // Rule entries without productions are dropped
+            } else if (changed) {
+                newProductionRules[lhs] = distinct(newProductions);
             }
         }
 
-        newProductionRules = updatedRules;
+        newProductionRules = ensureCapacity(newProductionRules, newSymbols.size());
+        return new Grammar(newSymbols, newNonTerminals, terminals, newProductionRules, startSymbol);
+    }
 
-        // Step 2: Break longer productions into binary productions
-        // Use an iterative approach instead of recursion to avoid stack overflow
+    public int getProductionCount() {
+        int count = 0;
+        for (int[][] rules : productions) {
+            if (rules != null) {
+                count += rules.length;
+            }
+        }
+        return count;
+    }
 
-        // Map to store production patterns to their corresponding non-terminal
-        Map<String, String> productionPatternMap = new HashMap<>();
-        int longProductionCounter = 1;
-        boolean madeChanges;
+    // Total number of symbols over all rules, counting each left-hand side once per production
+    public int getSize() {
+        int size = 0;
+        for (int[][] rules : productions) {
+            if (rules == null) continue;
+            for (int[] production : rules) {
+                size += production.length + 1;
+            }
+        }
+        return size;
+    }
 
-        do {
-            madeChanges = false;
-            updatedRules = new HashMap<>();
+    public Grammar removeUnitProductions() {
+        return removeUnitProductions(null);
+    }
 
-            // Process each non-terminal and its productions
-            for (Map.Entry<String, Set<String>> entry : newProductionRules.entrySet()) {
-                String lhs = entry.getKey();
-                Set<String> productions = entry.getValue();
-                Set<String> newProductions = new HashSet<>();
+    private Grammar removeUnitProductions(ForkJoinPool pool) {
+        // Step 1: Compute unit production closures for each non-terminal
+        BitSet[] unitClosure = findUnitClosures();
 
-                for (String production : productions) {
-                    String[] symbols = production.split(" ");
+        // Step 2 & 3: Create new production rules by replacing unit productions
+        int[][][] newProductionRules = mapRows(nonTerminals, productions.length, pool, nonTerminal -> {
+            List<int[]> newProductions = new ArrayList<>();
+            BitSet unitProductions = unitClosure[nonTerminal];
 
-                    // If the production has 2 or fewer symbols, keep it as is
-                    if (symbols.length <= 2) {
+            for (int unit = unitProductions.nextSetBit(0); unit >= 0; unit = unitProductions.nextSetBit(unit + 1)) {
+                for (int[] production : rules(unit)) {
+                    // Only add non-unit productions
+                    if (!isUnitProduction(production)) {
                         newProductions.add(production);
-                        continue;
-                    }
-
-                    madeChanges = true;
-
-                    // Handle productions with more than 2 symbols
-                    // We'll convert A -> B1 B2 B3...Bn to A -> B1 Y and Y -> B2 B3...Bn
-                    String firstSymbol = symbols[0];
-
-                    // Create the remainder string (B2 B3...Bn)
-                    StringBuilder remainderBuilder = new StringBuilder();
-                    for (int i = 1; i < symbols.length; i++) {
-                        remainderBuilder.append(symbols[i]);
-                        if (i < symbols.length - 1) {
-                            remainderBuilder.append(" ");
-                        }
                     }
-                    String remainder = remainderBuilder.toString();
-
-                    // Check if we already have a non-terminal for this pattern
-                    String newNonTerminal;
-                    if (productionPatternMap.containsKey(remainder)) {
-                        newNonTerminal = productionPatternMap.get(remainder);
-                    } else {
-                        newNonTerminal = "Y" + longProductionCounter++;
-                        productionPatternMap.put(remainder, newNonTerminal);
-                        newNonTerminals.add(newNonTerminal);
-
-                        // Create a production rule for the new non-terminal
-                        if (!updatedRules.containsKey(newNonTerminal)) {
-                            updatedRules.put(newNonTerminal, new HashSet<>());
-                        }
-                        updatedRules.get(newNonTerminal).add(remainder);
-                    }
-
-                    // Add the new binary production: A -> B1 Y
-                    newProductions.add(firstSymbol + " " + newNonTerminal);
                 }
-
-                updatedRules.put(lhs, newProductions);
             }
 
-            // Update the production rules for the next iteration
-            newProductionRules = new HashMap<>();
-            for (Map.Entry<String, Set<String>> entry : updatedRules.entrySet()) {
-                newProductionRules.put(entry.getKey(), new HashSet<>(entry.getValue()));
+            if (unitProductions.cardinality() == 1 && productions[nonTerminal] != null) {
+                // The closure is just the non-terminal itself, so the row is kept as is unless it had A -> A
+                return shareIfUnchanged(productions[nonTerminal], newProductions);
             }
+            return distinct(newProductions);
+        });
 
-        } while (madeChanges);
-
-        return new Grammar(newNonTerminals, newTerminals, newProductionRules, startSymbol);
+        return new Grammar(symbols, nonTerminals, terminals, newProductionRules, startSymbol);
     }
 
-    public Grammar removeUnitProductions() {
-        // Step 1: Compute unit production closures for each non-terminal
-        Map<String, Set<String>> unitClosure = new HashMap<>();
-
-        // Initialize each non-terminal's closure with itself
-        for (String nonTerminal : nonTerminals) {
-            Set<String> closure = new HashSet<>();
-            closure.add(nonTerminal);
-            unitClosure.put(nonTerminal, closure);
-        }
-
-        // Compute the transitive closure of unit productions
-        boolean changed;
-        do {
-            changed = false;
-            for (String nonTerminal : nonTerminals) {
-                Set<String> closure = unitClosure.get(nonTerminal);
-                Set<String> newMembers = new HashSet<>();
-
-                for (String member : closure) {
-                    Set<String> productions = productionRules.getOrDefault(member, new HashSet<>());
-                    for (String production : productions) {
-                        // Check if the production is a unit production (single non-terminal)
-                        if (!production.contains(" ") && nonTerminals.contains(production)) {
-                            newMembers.add(production);
-                        }
-                    }
+    // The unit productions form a graph over the non-terminals. Its strongly connected components
+    // (Tarjan) share one closure, and Tarjan emits every component after all components it reaches,
+    // so each closure is its members plus the already finished closures of its successors.
+    // Members of a component share the same BitSet, callers only read it.
+    private BitSet[] findUnitClosures() {
+        int size = symbols.size();
+        int[][] successors = new int[size][];
+        for (int nonTerminal = nonTerminals.nextSetBit(0); nonTerminal >= 0; nonTerminal = nonTerminals.nextSetBit(nonTerminal + 1)) {
+            int count = 0;
+            int[][] rules = rules(nonTerminal);
+            int[] targets = new int[rules.length];
+            for (int[] production : rules) {
+                if (isUnitProduction(production)) {
+                    targets[count++] = production[0];
                 }
+            }
+            successors[nonTerminal] = Arrays.copyOf(targets, count);
+        }
 
-                // Add all new members to the closure
-                for (String newMember : newMembers) {
-                    if (!closure.contains(newMember)) {
-                        closure.add(newMember);
-                        changed = true;
+        BitSet[] unitClosure = new BitSet[size];
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        int[] component = new int[size];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[size];
+        int[] sccStack = new int[size];
+        int sccTop = 0;
+        int[] callStack = new int[size];
+        int[] nextEdge = new int[size];
+        int nextIndex = 0;
+        int componentCount = 0;
+        List<BitSet> componentClosures = new ArrayList<>();
+
+        for (int root = nonTerminals.nextSetBit(0); root >= 0; root = nonTerminals.nextSetBit(root + 1)) {
+            if (index[root] >= 0) continue;
+
+            // Iterative depth-first search, callStack holds the current path
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+            nextEdge[root] = 0;
+
+            while (depth > 0) {
+                int node = callStack[depth - 1];
+                if (nextEdge[node] < successors[node].length) {
+                    int target = successors[node][nextEdge[node]++];
+                    if (index[target] < 0) {
+                        index[target] = lowLink[target] = nextIndex++;
+                        sccStack[sccTop++] = target;
+                        onStack[target] = true;
+                        nextEdge[target] = 0;
+                        callStack[depth++] = target;
+                    } else if (onStack[target]) {
+                        lowLink[node] = Math.min(lowLink[node], index[target]);
                     }
+                    continue;
                 }
-            }
-        } while (changed);
-
-        // Step 2 & 3: Create new production rules by replacing unit productions
-        Map<String, Set<String>> newProductionRules = new HashMap<>();
-
-        for (String nonTerminal : nonTerminals) {
-            Set<String> newProductions = new HashSet<>();
-            Set<String> unitProductions = unitClosure.get(nonTerminal);
 
-            for (String unit : unitProductions) {
-                Set<String> productions = productionRules.getOrDefault(unit, new HashSet<>());
-                for (String production : productions) {
-                    // Only add non-unit productions
-                    if (production.contains(" ") || !nonTerminals.contains(production) || production.equals("ε")) {
-                        newProductions.add(production);
+                depth--;
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+                if (lowLink[node] != index[node]) continue;
+
+                // node is the root of a component: pop it and build its closure
+                BitSet closure = new BitSet();
+                int start = sccTop;
+                int member;
+                do {
+                    member = sccStack[--sccTop];
+                    onStack[member] = false;
+                    component[member] = componentCount;
+                    closure.set(member);
+                } while (member != node);
+
+                for (int k = sccTop; k < start; k++) {
+                    for (int target : successors[sccStack[k]]) {
+                        if (component[target] != componentCount) {
+                            closure.or(componentClosures.get(component[target]));
+                        }
                     }
                 }
+                for (int k = sccTop; k < start; k++) {
+                    unitClosure[sccStack[k]] = closure;
+                }
+                componentClosures.add(closure);
+                componentCount++;
             }
-
-            newProductionRules.put(nonTerminal, newProductions);
         }
 
-        return new Grammar(nonTerminals, terminals, newProductionRules, startSymbol);
+        return unitClosure;
     }
 
     public Grammar removeNonProductiveSymbols() {
+        return removeNonProductiveSymbols(null);
+    }
+
+    private Grammar removeNonProductiveSymbols(ForkJoinPool pool) {
         // Step 1 & 2: Find all productive non-terminals
-        Set<String> productiveNonTerminals = findProductiveNonTerminals();
+        BitSet productiveNonTerminals = findProductiveNonTerminals();
 
         // Step 3 & 4: Remove non-productive non-terminals and their rules
-        Set<String> newNonTerminals = new HashSet<>(productiveNonTerminals);
-        Map<String, Set<String>> newProductionRules = new HashMap<>();
-
         // Copy production rules for productive non-terminals
-        for (String nonTerminal : productiveNonTerminals) {
-            Set<String> productions = productionRules.getOrDefault(nonTerminal, new HashSet<>());
-            Set<String> newProductions = new HashSet<>();
+        int[][][] newProductionRules = mapRows(productiveNonTerminals, productions.length, pool, nonTerminal -> {
+            List<int[]> newProductions = new ArrayList<>();
 
             // Step 5: Keep only productions with productive symbols
-            for (String production : productions) {
-                if (production.equals("ε")) {
-                    newProductions.add(production);
-                    continue;
-                }
-
-                String[] symbols = production.split(" ");
+            for (int[] production : rules(nonTerminal)) {
                 boolean allSymbolsProductive = true;
-
-                for (String symbol : symbols) {
-                    if (nonTerminals.contains(symbol) && !productiveNonTerminals.contains(symbol)) {
+                for (int symbol : production) {
+                    if (nonTerminals.get(symbol) && !productiveNonTerminals.get(symbol)) {
                         allSymbolsProductive = false;
                         break;
                     }
@@ -574,79 +742,255 @@ public class Grammar {
                 }
             }
 
-            if (!newProductions.isEmpty()) {
-                newProductionRules.put(nonTerminal, newProductions);
-            }
-        }
+            return newProductions.isEmpty() ? null : shareIfUnchanged(productions[nonTerminal], newProductions);
+        });
 
-        return new Grammar(newNonTerminals, terminals, newProductionRules, startSymbol);
+        return new Grammar(symbols, productiveNonTerminals, terminals, newProductionRules, startSymbol);
     }
 
-    private Set<String> findProductiveNonTerminals() {
-        Set<String> productiveNonTerminals = new HashSet<>();
-        boolean changed;
+    private BitSet findProductiveNonTerminals() {
+        // A production is productive once every non-terminal in it is productive,
+        // terminals and the empty production derive terminal strings directly
+        return findDerivingNonTerminals(true);
+    }
 
-        // First, find all non-terminals that directly derive terminal strings
-        for (Map.Entry<String, Set<String>> entry : productionRules.entrySet()) {
-            String nonTerminal = entry.getKey();
-            for (String production : entry.getValue()) {
-                if (production.equals("ε")) {
-                    // Empty string is considered a terminal string
-                    productiveNonTerminals.add(nonTerminal);
-                    break;
+    // Worklist fixpoint, linear in the size of the grammar. Every production keeps a counter of the
+    // symbol occurrences not yet resolved, and a reverse index lists the productions each symbol occurs in.
+    // When a non-terminal gets marked only the productions mentioning it are revisited, and a production
+    // whose counter drops to zero marks its left-hand side.
+    private BitSet findDerivingNonTerminals(boolean terminalsResolved) {
+        int symbolCount = symbols.size();
+        int productionCount = 0;
+        int[] occurrenceStart = new int[symbolCount + 1];
+
+        // Pass 1: count productions and occurrences of each tracked symbol
+        for (int lhs = 0; lhs < productions.length; lhs++) {
+            if (productions[lhs] == null) continue;
+            for (int[] production : productions[lhs]) {
+                productionCount++;
+                for (int symbol : production) {
+                    occurrenceStart[symbol + 1]++;
+                }
+            }
+        }
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            occurrenceStart[symbol + 1] += occurrenceStart[symbol];
+        }
+
+        // Pass 2: fill the reverse index and the unresolved counters
+        int[] occurrences = new int[occurrenceStart[symbolCount]];
+        int[] fill = Arrays.copyOf(occurrenceStart, symbolCount);
+        int[] productionLhs = new int[productionCount];
+        int[] unresolved = new int[productionCount];
+        BitSet derived = new BitSet();
+        int[] worklist = new int[symbolCount];
+        int pending = 0;
+        int index = 0;
+
+        for (int lhs = 0; lhs < productions.length; lhs++) {
+            if (productions[lhs] == null) continue;
+            for (int[] production : productions[lhs]) {
+                for (int symbol : production) {
+                    // A terminal is either resolved from the start or never (it is never queued)
+                    if (terminalsResolved && !nonTerminals.get(symbol)) continue;
+                    occurrences[fill[symbol]++] = index;
+                    unresolved[index]++;
                 }
+                productionLhs[index] = lhs;
 
-                String[] symbols = production.split(" ");
-                boolean allTerminals = true;
+                if (unresolved[index] == 0 && !derived.get(lhs)) {
+                    derived.set(lhs);
+                    worklist[pending++] = lhs;
+                }
+                index++;
+            }
+        }
 
-                for (String symbol : symbols) {
-                    if (nonTerminals.contains(symbol)) {
-                        allTerminals = false;
-                        break;
+        while (pending > 0) {
+            int symbol = worklist[--pending];
+            for (int i = occurrenceStart[symbol]; i < fill[symbol]; i++) {
+                int production = occurrences[i];
+                if (--unresolved[production] == 0) {
+                    int lhs = productionLhs[production];
+                    if (!derived.get(lhs)) {
+                        derived.set(lhs);
+                        worklist[pending++] = lhs;
                     }
                 }
+            }
+        }
+
+        return derived;
+    }
+
+    // Read-only views of the interned data for the parsers in this package
+    SymbolTable symbolTable() {
+        return symbols;
+    }
+
+    BitSet nonTerminalIds() {
+        return nonTerminals;
+    }
+
+    BitSet terminalIds() {
+        return terminals;
+    }
+
+    int startSymbolId() {
+        return startSymbol;
+    }
+
+    int[][] rulesOf(int nonTerminal) {
+        return rules(nonTerminal);
+    }
+
+    // null when the non-terminal has no rule entry at all, unlike rulesOf
+    int[][] ruleEntry(int nonTerminal) {
+        return nonTerminal < productions.length ? productions[nonTerminal] : null;
+    }
 
-                if (allTerminals) {
-                    productiveNonTerminals.add(nonTerminal);
-                    break;
+    BitSet nullableNonTerminalIds() {
+        return findNullableNonTerminals();
+    }
+
+    // Builds a rule table with row A = row.apply(A) for every A in lhsSet. The rows are independent, so
+    // with a pool they are split across its workers; every task writes only its own slots, which makes
+    // the table the same as the one of the sequential loop.
+    private static int[][][] mapRows(BitSet lhsSet, int length, ForkJoinPool pool, IntFunction<int[][]> row) {
+        int[][][] result = new int[length][][];
+        int[] ids = lhsSet.stream().filter(id -> id < length).toArray();
+        if (pool == null || ids.length < ROW_TASK_THRESHOLD) {
+            for (int id : ids) {
+                result[id] = row.apply(id);
+            }
+        } else {
+            pool.invoke(new RowTask(ids, 0, ids.length, row, result));
+        }
+        return result;
+    }
+
+    private static class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] ids;
+        private final int from;
+        private final int to;
+        private final IntFunction<int[][]> row;
+        private final int[][][] result;
+
+        RowTask(int[] ids, int from, int to, IntFunction<int[][]> row, int[][][] result) {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+            this.row = row;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= ROW_TASK_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    result[ids[i]] = row.apply(ids[i]);
                 }
+                return;
             }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RowTask(ids, from, middle, row, result), new RowTask(ids, middle, to, row, result));
         }
+    }
 
-        // Then, iteratively find more productive non-terminals
-        do {
-            changed = false;
+    private int[][] rules(int nonTerminal) {
+        return nonTerminal < productions.length && productions[nonTerminal] != null ? productions[nonTerminal] : NO_PRODUCTIONS;
+    }
 
-            for (Map.Entry<String, Set<String>> entry : productionRules.entrySet()) {
-                String nonTerminal = entry.getKey();
-                if (productiveNonTerminals.contains(nonTerminal)) continue;
+    private boolean isUnitProduction(int[] production) {
+        return production.length == 1 && nonTerminals.get(production[0]);
+    }
 
-                for (String production : entry.getValue()) {
-                    if (production.equals("ε")) {
-                        productiveNonTerminals.add(nonTerminal);
-                        changed = true;
-                        break;
-                    }
+    private String productionToString(int[] production) {
+        if (production.length == 0) {
+            return EPSILON;
+        }
+        StringBuilder sb = new StringBuilder(symbols.name(production[0]));
+        for (int i = 1; i < production.length; i++) {
+            sb.append(' ').append(symbols.name(production[i]));
+        }
+        return sb.toString();
+    }
 
-                    String[] symbols = production.split(" ");
-                    boolean allProductive = true;
+    private Set<String> names(BitSet ids) {
+        Set<String> result = new HashSet<>();
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result.add(symbols.name(id));
+        }
+        return result;
+    }
 
-                    for (String symbol : symbols) {
-                        if (nonTerminals.contains(symbol) && !productiveNonTerminals.contains(symbol)) {
-                            allProductive = false;
-                            break;
-                        }
-                    }
+    private static boolean containsAny(int[] production, BitSet symbolSet) {
+        for (int symbol : production) {
+            if (symbolSet.get(symbol)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                    if (allProductive) {
-                        productiveNonTerminals.add(nonTerminal);
-                        changed = true;
-                        break;
-                    }
+    private static boolean needsNullExpansion(int[][] rules, BitSet nullableNonTerminals) {
+        for (int[] production : rules) {
+            if (production.length == 0) {
+                return true;
+            }
+            for (int symbol : production) {
+                if (nullableNonTerminals.get(symbol)) {
+                    return true;
                 }
             }
-        } while (changed);
+        }
+        return false;
+    }
 
-        return productiveNonTerminals;
+    // Reuses the original row when a filter kept every production, so unchanged rules stay shared
+    private static int[][] shareIfUnchanged(int[][] original, List<int[]> kept) {
+        return original != null && kept.size() == original.length ? original : kept.toArray(NO_PRODUCTIONS);
+    }
+
+    private static int[][][] ensureCapacity(int[][][] rules, int size) {
+        return size <= rules.length ? rules : Arrays.copyOf(rules, Math.max(size, rules.length * 2));
+    }
+
+    // Removes duplicate right-hand sides, rule sets behave like the Set<String> of the public API
+    static int[][] distinct(List<int[]> productions) {
+        if (productions.size() <= 1) {
+            return productions.toArray(NO_PRODUCTIONS);
+        }
+
+        Set<ProductionKey> seen = new HashSet<>();
+        List<int[]> unique = new ArrayList<>(productions.size());
+        for (int[] production : productions) {
+            if (seen.add(new ProductionKey(production))) {
+                unique.add(production);
+            }
+        }
+        return unique.toArray(NO_PRODUCTIONS);
+    }
+
+    private static final class ProductionKey {
+        private final int[] symbols;
+        private final int hash;
+
+        ProductionKey(int[] symbols) {
+            this.symbols = symbols;
+            this.hash = Arrays.hashCode(symbols);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ProductionKey && Arrays.equals(symbols, ((ProductionKey) obj).symbols);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,502 @@
+package com.labs.lab5;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// Reads a grammar from BNF / EBNF text, one rule per line, in the notation Grammar.toString prints:
+//
+//   Start Symbol: S      the header of Grammar.toString: 'Start Symbol:' works like %start, the
+//   Production Rules:    'Non-terminals:', 'Terminals:' and 'Production Rules:' lines are skipped
+//
+//   # comment
+//   %start S
+//   S -> A | b A | a B
+//     | c              continuation lines start with '|'
+//   B -> b | ε        ε, 'epsilon' or an empty alternative is the empty production
+//   <list> ::= "(" <item> { "," <item> } ")" ;
+//
+// Symbols defined on a left-hand side are non-terminals, every other symbol is a terminal, and
+// quoted symbols are always terminals. '->' and '::=' are interchangeable, <...> names may contain
+// spaces and ';' ends a rule early. EBNF groups become helper non-terminals named after the rule:
+// [ α ] is optional, { α } repeats zero or more times and ( α | β ) groups alternatives.
+// Helpers are named S_1, S_2, ... once the whole text is read, skipping names the text uses, so
+// they read back as plain symbols.
+// The start symbol is the first left-hand side unless %start names another one.
+//
+// The text is consumed as a stream of tokens and every symbol is interned as soon as it is read,
+// so only the int productions are kept in memory, never the text itself.
+public class GrammarReader {
+    private static final String EPSILON = "ε";
+
+    private enum TokenKind { SYMBOL, QUOTED, ARROW, BAR, SEMICOLON, NEWLINE, OPEN, CLOSE, START, EOF }
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int bufferLength;
+    private int bufferPosition;
+    private int line = 1;
+
+    // Current token
+    private TokenKind kind;
+    private String text;
+    private char bracket;
+    private int tokenLine;
+
+    private final SymbolTable symbols = new SymbolTable();
+    private final BitSet defined = new BitSet();
+    private final BitSet quoted = new BitSet();
+    private final List<List<int[]>> rules = new ArrayList<>();
+    // Helpers are referenced by negative ids, -1 - index, until they are named
+    private final List<List<int[]>> helperRules = new ArrayList<>();
+    private final List<String> helperOwners = new ArrayList<>();
+    private int startSymbol = -1;
+    private String startName;
+
+    private GrammarReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    public static Grammar read(Reader reader) throws IOException {
+        return new GrammarReader(reader).readGrammar();
+    }
+
+    // Maps the file and decodes it chunk by chunk, the page cache is the only copy of the text
+    public static Grammar read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(new ByteBufferReader(bytes));
+        }
+    }
+
+    private Grammar readGrammar() throws IOException {
+        next();
+        while (kind != TokenKind.EOF) {
+            if (kind == TokenKind.NEWLINE || kind == TokenKind.SEMICOLON) {
+                next();
+            } else if (kind == TokenKind.START) {
+                next();
+                if (kind != TokenKind.SYMBOL) {
+                    throw error("Expected a symbol after %start");
+                }
+                startName = text;
+                next();
+            } else if (kind == TokenKind.SYMBOL && (text.equals("Non-terminals:") || text.equals("Terminals:"))) {
+                readLine();
+                next();
+            } else if (kind == TokenKind.SYMBOL && (text.equals("Start") || text.equals("Production"))) {
+                readHeaderOrRule();
+            } else {
+                readRule();
+            }
+        }
+        nameHelpers();
+
+        if (startName != null) {
+            startSymbol = symbols.id(startName);
+            if (startSymbol < 0 || !defined.get(startSymbol)) {
+                throw new IllegalArgumentException("Start symbol must be a non-terminal: " + startName);
+            }
+        }
+        if (startSymbol < 0) {
+            throw new IllegalArgumentException("Grammar has no rules");
+        }
+
+        BitSet nonTerminals = (BitSet) defined.clone();
+        BitSet terminals = new BitSet();
+        terminals.set(0, symbols.size());
+        terminals.andNot(nonTerminals);
+
+        if (nonTerminals.intersects(quoted)) {
+            BitSet both = (BitSet) nonTerminals.clone();
+            both.and(quoted);
+            throw new IllegalArgumentException("Quoted terminal is also defined as a non-terminal: " + symbols.name(both.nextSetBit(0)));
+        }
+
+        int[][][] productions = new int[symbols.size()][][];
+        for (int lhs = 0; lhs < rules.size(); lhs++) {
+            if (rules.get(lhs) != null) {
+                productions[lhs] = Grammar.distinct(rules.get(lhs));
+            }
+        }
+        return Grammar.fromInterned(symbols, nonTerminals, terminals, productions, startSymbol);
+    }
+
+    // 'Start Symbol: S' and 'Production Rules:' from Grammar.toString, or a rule for Start or Production
+    private void readHeaderOrRule() throws IOException {
+        String word = text;
+        next();
+        if (kind == TokenKind.SYMBOL && word.equals("Start") && text.equals("Symbol:")) {
+            startName = readLine().trim();
+            next();
+        } else if (kind == TokenKind.SYMBOL && word.equals("Production") && text.equals("Rules:")) {
+            next();
+        } else {
+            readRule(word);
+        }
+    }
+
+    private void readRule() throws IOException {
+        if (kind != TokenKind.SYMBOL) {
+            throw error("Expected a non-terminal at the start of a rule");
+        }
+        String lhsName = text;
+        next();
+        readRule(lhsName);
+    }
+
+    // Reads the rest of a rule whose left-hand side has been consumed
+    private void readRule(String lhsName) throws IOException {
+        int lhs = symbols.intern(lhsName);
+        if (quoted.get(lhs)) {
+            throw error("Quoted terminal is also defined as a non-terminal: " + lhsName);
+        }
+        define(lhs);
+        if (startSymbol < 0) {
+            startSymbol = lhs;
+        }
+
+        if (kind != TokenKind.ARROW) {
+            throw error("Expected '->' or '::=' after " + lhsName);
+        }
+        next();
+
+        readAlternatives(rules.get(lhs), lhsName, (char) 0);
+    }
+
+    // Reads α | β | ... into target, up to the closing bracket or the end of the rule
+    private void readAlternatives(List<int[]> target, String ruleName, char closing) throws IOException {
+        int[] sequence = new int[8];
+        int length = 0;
+
+        while (true) {
+            if (kind == TokenKind.NEWLINE && closing != 0) {
+                next(); // Groups may span lines
+                continue;
+            }
+            if (kind == TokenKind.NEWLINE) {
+                next();
+                while (kind == TokenKind.NEWLINE) {
+                    next();
+                }
+                if (kind == TokenKind.BAR) {
+                    continue; // Continuation line
+                }
+                break;
+            }
+            if (kind == TokenKind.EOF || kind == TokenKind.SEMICOLON) {
+                if (closing != 0) {
+                    throw error("Missing '" + closing + "'");
+                }
+                break;
+            }
+            if (kind == TokenKind.CLOSE) {
+                if (bracket != closing) {
+                    throw error("Unexpected '" + bracket + "'");
+                }
+                next();
+                break;
+            }
+
+            if (kind == TokenKind.BAR) {
+                target.add(Arrays.copyOf(sequence, length));
+                length = 0;
+                next();
+                continue;
+            }
+
+            int symbol;
+            if (kind == TokenKind.SYMBOL) {
+                if (text.equals(EPSILON) || text.equals("epsilon")) {
+                    next();
+                    continue;
+                }
+                symbol = symbols.intern(text);
+                ensureRow(symbol);
+                next();
+            } else if (kind == TokenKind.QUOTED) {
+                symbol = symbols.intern(text);
+                ensureRow(symbol);
+                if (defined.get(symbol)) {
+                    throw error("Quoted terminal is also defined as a non-terminal: " + text);
+                }
+                quoted.set(symbol);
+                next();
+            } else if (kind == TokenKind.OPEN) {
+                symbol = readGroup(ruleName);
+            } else {
+                throw error("Unexpected token in rule of " + ruleName);
+            }
+
+            if (length == sequence.length) {
+                sequence = Arrays.copyOf(sequence, length * 2);
+            }
+            sequence[length++] = symbol;
+        }
+
+        target.add(Arrays.copyOf(sequence, length));
+    }
+
+    // [ α ] -> H, H -> α | ε      { α } -> H, H -> α H | ε      ( α ) -> H, H -> α
+    private int readGroup(String ruleName) throws IOException {
+        char open = bracket;
+        char closing = open == '[' ? ']' : open == '{' ? '}' : ')';
+        List<int[]> groupRules = new ArrayList<>();
+        int helper = -1 - helperRules.size();
+        helperRules.add(groupRules);
+        helperOwners.add(ruleName);
+        next();
+
+        readAlternatives(groupRules, ruleName, closing);
+        if (open == '{') {
+            for (int i = 0; i < groupRules.size(); i++) {
+                int[] production = groupRules.get(i);
+                int[] repeated = Arrays.copyOf(production, production.length + 1);
+                repeated[production.length] = helper;
+                groupRules.set(i, repeated);
+            }
+        }
+        if (open != '(') {
+            groupRules.add(new int[0]);
+        }
+        return helper;
+    }
+
+    // Any symbol of the text can look like a helper name, so helpers are only named once every
+    // symbol of the text is interned, and a name the text already uses is skipped
+    private void nameHelpers() {
+        if (helperRules.isEmpty()) {
+            return;
+        }
+        int[] ids = new int[helperRules.size()];
+        int[] counts = new int[symbols.size()];
+        for (int i = 0; i < ids.length; i++) {
+            String owner = helperOwners.get(i);
+            int ownerId = symbols.id(owner);
+            String name;
+            do {
+                name = owner + "_" + ++counts[ownerId];
+            } while (symbols.contains(name));
+            ids[i] = symbols.intern(name);
+            define(ids[i]);
+            rules.set(ids[i], helperRules.get(i));
+        }
+
+        for (List<int[]> productions : rules) {
+            if (productions == null) continue;
+            for (int[] production : productions) {
+                for (int k = 0; k < production.length; k++) {
+                    if (production[k] < 0) {
+                        production[k] = ids[-1 - production[k]];
+                    }
+                }
+            }
+        }
+    }
+
+    private void define(int symbol) {
+        defined.set(symbol);
+        ensureRow(symbol);
+        if (rules.get(symbol) == null) {
+            rules.set(symbol, new ArrayList<>());
+        }
+    }
+
+    private void ensureRow(int symbol) {
+        while (rules.size() <= symbol) {
+            rules.add(null);
+        }
+    }
+
+    private void next() throws IOException {
+        int c = peekChar();
+        while (c == ' ' || c == '\t' || c == '\r') {
+            readChar();
+            c = peekChar();
+        }
+        if (c == '#') {
+            while (c >= 0 && c != '\n') {
+                readChar();
+                c = peekChar();
+            }
+        }
+
+        tokenLine = line;
+        if (c < 0) {
+            kind = TokenKind.EOF;
+            return;
+        }
+
+        readChar();
+        switch (c) {
+            case '\n':
+                kind = TokenKind.NEWLINE;
+                return;
+            case '|':
+                kind = TokenKind.BAR;
+                return;
+            case ';':
+                kind = TokenKind.SEMICOLON;
+                return;
+            case '[':
+            case '{':
+            case '(':
+                kind = TokenKind.OPEN;
+                bracket = (char) c;
+                return;
+            case ']':
+            case '}':
+            case ')':
+                kind = TokenKind.CLOSE;
+                bracket = (char) c;
+                return;
+            case '"':
+            case '\'':
+                kind = TokenKind.QUOTED;
+                text = readUntil((char) c, "Unterminated quoted terminal");
+                return;
+            case '<':
+                kind = TokenKind.SYMBOL;
+                text = readUntil('>', "Unterminated <symbol>").trim();
+                return;
+            case '%':
+                String directive = readSymbolText('%');
+                if (!directive.equals("%start")) {
+                    throw error("Unknown directive " + directive);
+                }
+                kind = TokenKind.START;
+                return;
+            default:
+                break;
+        }
+
+        if (c == '-' && peekChar() == '>') {
+            readChar();
+            kind = TokenKind.ARROW;
+            return;
+        }
+        if (c == ':' && peekChar() == ':') {
+            readChar();
+            if (readChar() != '=') {
+                throw error("Expected '::='");
+            }
+            kind = TokenKind.ARROW;
+            return;
+        }
+
+        kind = TokenKind.SYMBOL;
+        text = readSymbolText((char) c);
+    }
+
+    // Reads the raw text up to the end of the line, leaving the line break for next()
+    private String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c = peekChar();
+        while (c >= 0 && c != '\n') {
+            sb.append((char) readChar());
+            c = peekChar();
+        }
+        return sb.toString();
+    }
+
+    private String readSymbolText(char first) throws IOException {
+        StringBuilder sb = new StringBuilder().append(first);
+        int c = peekChar();
+        while (c >= 0 && !isDelimiter(c)) {
+            sb.append((char) readChar());
+            c = peekChar();
+        }
+        return sb.toString();
+    }
+
+    private String readUntil(char end, String message) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c = readChar();
+        while (c != end) {
+            if (c < 0 || c == '\n') {
+                throw error(message);
+            }
+            sb.append((char) c);
+            c = readChar();
+        }
+        if (sb.length() == 0) {
+            throw error("Empty symbol");
+        }
+        return sb.toString();
+    }
+
+    private static boolean isDelimiter(int c) {
+        return Character.isWhitespace(c) || "|;[]{}()\"'<#".indexOf(c) >= 0;
+    }
+
+    private int peekChar() throws IOException {
+        if (bufferPosition == bufferLength) {
+            bufferLength = reader.read(buffer, 0, buffer.length);
+            bufferPosition = 0;
+            if (bufferLength <= 0) {
+                bufferLength = 0;
+                return -1;
+            }
+        }
+        return buffer[bufferPosition];
+    }
+
+    private int readChar() throws IOException {
+        int c = peekChar();
+        if (c >= 0) {
+            bufferPosition++;
+            if (c == '\n') {
+                line++;
+            }
+        }
+        return c;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Line " + tokenLine + ": " + message);
+    }
+
+    // Decodes UTF-8 straight out of a mapped buffer
+    private static final class ByteBufferReader extends Reader {
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        private boolean flushed;
+
+        ByteBufferReader(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(char[] target, int offset, int length) throws IOException {
+            if (flushed) {
+                return -1;
+            }
+            CharBuffer out = CharBuffer.wrap(target, offset, length);
+            CoderResult result = decoder.decode(bytes, out, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (!bytes.hasRemaining() && out.position() == offset) {
+                decoder.flush(out);
+                flushed = true;
+            }
+            int read = out.position() - offset;
+            return read == 0 && flushed ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.labs.lab5;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+// Binary image of an interned grammar, read back through a memory mapping without any parsing:
+//
+//   int magic 'LFAG', int version, int symbolCount, int startSymbol
+//   symbolCount x { byte kind (0 unused, 1 terminal, 2 non-terminal), int length, UTF-8 name }
+//   symbolCount x { int ruleCount (-1 for no rule entry), ruleCount x { int length, length x int } }
+//
+// All ints are big-endian, as DataOutputStream writes them.
+public class GrammarSnapshot {
+    private static final int MAGIC = 0x4C464147; // "LFAG"
+    private static final int VERSION = 1;
+
+    private static final byte UNUSED = 0;
+    private static final byte TERMINAL = 1;
+    private static final byte NON_TERMINAL = 2;
+
+    private GrammarSnapshot() {
+    }
+
+    public static void write(Grammar grammar, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(grammar, out);
+        }
+    }
+
+    public static void write(Grammar grammar, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        SymbolTable symbols = grammar.symbolTable();
+        BitSet nonTerminals = grammar.nonTerminalIds();
+        BitSet terminals = grammar.terminalIds();
+        int symbolCount = symbols.size();
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(symbolCount);
+        out.writeInt(grammar.startSymbolId());
+
+        for (int id = 0; id < symbolCount; id++) {
+            out.writeByte(nonTerminals.get(id) ? NON_TERMINAL : terminals.get(id) ? TERMINAL : UNUSED);
+            byte[] name = symbols.name(id).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+        }
+
+        for (int id = 0; id < symbolCount; id++) {
+            int[][] rules = grammar.ruleEntry(id);
+            if (rules == null) {
+                out.writeInt(-1);
+                continue;
+            }
+            out.writeInt(rules.length);
+            for (int[] production : rules) {
+                out.writeInt(production.length);
+                for (int symbol : production) {
+                    out.writeInt(symbol);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    public static Grammar read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Every count and length is checked against the bytes left before anything is allocated, so a
+    // corrupt or truncated file fails with an IOException instead of a huge allocation
+    public static Grammar read(ByteBuffer buffer) throws IOException {
+        ByteBuffer in = buffer.duplicate();
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a grammar snapshot");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported grammar snapshot version: " + version);
+            }
+            int symbolCount = in.getInt();
+            int startSymbol = in.getInt();
+            // At least a kind, a name length and a rule count per symbol
+            if (symbolCount < 0 || symbolCount > in.remaining() / 9) {
+                throw corrupt("symbol count " + symbolCount + " does not fit in the file");
+            }
+
+            SymbolTable symbols = new SymbolTable();
+            BitSet nonTerminals = new BitSet(symbolCount);
+            BitSet terminals = new BitSet(symbolCount);
+            for (int id = 0; id < symbolCount; id++) {
+                byte kind = in.get();
+                byte[] name = new byte[length(in, 1)];
+                in.get(name);
+                if (symbols.intern(new String(name, StandardCharsets.UTF_8)) != id) {
+                    throw corrupt("duplicate symbol name");
+                }
+                if (kind == NON_TERMINAL) {
+                    nonTerminals.set(id);
+                } else if (kind == TERMINAL) {
+                    terminals.set(id);
+                }
+            }
+
+            int[][][] productions = new int[symbolCount][][];
+            for (int id = 0; id < symbolCount; id++) {
+                int ruleCount = in.getInt();
+                if (ruleCount < 0) continue;
+                if (ruleCount > in.remaining() / 4) {
+                    throw corrupt("rule count " + ruleCount + " does not fit in the file");
+                }
+                int[][] rules = new int[ruleCount][];
+                for (int r = 0; r < ruleCount; r++) {
+                    int[] production = new int[length(in, 4)];
+                    for (int i = 0; i < production.length; i++) {
+                        production[i] = in.getInt();
+                    }
+                    rules[r] = production;
+                }
+                productions[id] = rules;
+            }
+
+            return Grammar.fromInterned(symbols, nonTerminals, terminals, productions, startSymbol);
+        } catch (BufferUnderflowException e) {
+            throw corrupt("truncated data");
+        }
+    }
+
+    // Reads a length of items of the given size in bytes that must fit in what is left of the buffer
+    private static int length(ByteBuffer in, int itemSize) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining() / itemSize) {
+            throw corrupt("length " + length + " does not fit in the file");
+        }
+        return length;
+    }
+
+    private static IOException corrupt(String message) {
+        return new IOException("Corrupt grammar snapshot: " + message);
+    }
+}
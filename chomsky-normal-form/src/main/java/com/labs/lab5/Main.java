@@ -1,10 +1,12 @@
 package com.labs.lab5;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.*;
 
 
 public class Main {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         Set<String> nonTerminals = new HashSet<>(Arrays.asList("S", "A", "B", "C", "D"));
         Set<String> terminals = new HashSet<>(Arrays.asList("a", "b"));
 
@@ -20,11 +22,31 @@ public class Main {
         System.out.println("Original Grammar:");
         System.out.println(grammar);
 
-        Grammar newGrammar = grammar.removeNullProductions().removeUnitProductions().removeNonProductiveSymbols().removeInaccessibleSymbols().toChomskyNormalForm();
+        Grammar newGrammar = grammar.normalize();
 
 
         System.out.println("\nGrammar in Chomsky Normal Form:");
         System.out.println(newGrammar);
+        System.out.println("Size: " + newGrammar.getProductionCount() + " productions, " + newGrammar.getSize() + " symbols");
+
+        CYKParser parser = new CYKParser(newGrammar);
+        for (String word : Arrays.asList("a b", "b a b", "b b a", "a a a a")) {
+            ParseForest forest = parser.parse(Arrays.asList(word.split(" ")));
+            System.out.println("\n" + word + ": " + (forest.isAccepted() ? "accepted, " + forest.countTrees() + " parse trees" : "rejected"));
+            if (forest.isAccepted()) {
+                System.out.println(forest.getTree());
+            }
+        }
+
+        // Earley works on the original grammar, so the tree uses the rules as they were written
+        EarleyParser earley = new EarleyParser(grammar);
+        System.out.println("\nEarley parse of b a b on the original grammar:");
+        System.out.println(earley.parse(Arrays.asList("b", "a", "b")));
+
+        // The same kind of grammar written as EBNF text
+        Grammar listGrammar = GrammarReader.read(new StringReader("list -> \"(\" item { \",\" item } \")\"\nitem -> a | b [ S ]\nS -> a b\n"));
+        System.out.println("\nGrammar read from EBNF:");
+        System.out.println(listGrammar);
     }
 
 }
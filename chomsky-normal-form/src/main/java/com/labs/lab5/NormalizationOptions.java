@@ -0,0 +1,97 @@
+package com.labs.lab5;
+
+import java.util.concurrent.ForkJoinPool;
+
+// Selects which passes Grammar.normalize runs, all of them by default
+public class NormalizationOptions {
+    private boolean removeNullProductions = true;
+    private boolean removeUnitProductions = true;
+    private boolean removeNonProductiveSymbols = true;
+    private boolean removeInaccessibleSymbols = true;
+    private boolean chomskyNormalForm = true;
+    private boolean binarizeBeforeNullRemoval = false;
+    private long maxNullExpansion = Grammar.DEFAULT_MAX_NULL_EXPANSION;
+    private boolean parallel = false;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public boolean isRemoveNullProductions() {
+        return removeNullProductions;
+    }
+
+    public void setRemoveNullProductions(boolean removeNullProductions) {
+        this.removeNullProductions = removeNullProductions;
+    }
+
+    public boolean isRemoveUnitProductions() {
+        return removeUnitProductions;
+    }
+
+    public void setRemoveUnitProductions(boolean removeUnitProductions) {
+        this.removeUnitProductions = removeUnitProductions;
+    }
+
+    public boolean isRemoveNonProductiveSymbols() {
+        return removeNonProductiveSymbols;
+    }
+
+    public void setRemoveNonProductiveSymbols(boolean removeNonProductiveSymbols) {
+        this.removeNonProductiveSymbols = removeNonProductiveSymbols;
+    }
+
+    public boolean isRemoveInaccessibleSymbols() {
+        return removeInaccessibleSymbols;
+    }
+
+    public void setRemoveInaccessibleSymbols(boolean removeInaccessibleSymbols) {
+        this.removeInaccessibleSymbols = removeInaccessibleSymbols;
+    }
+
+    public boolean isChomskyNormalForm() {
+        return chomskyNormalForm;
+    }
+
+    public void setChomskyNormalForm(boolean chomskyNormalForm) {
+        this.chomskyNormalForm = chomskyNormalForm;
+    }
+
+    // Always split long productions before removing null productions (BIN before DEL). Without it
+    // this only happens when the plain expansion would exceed maxNullExpansion productions.
+    public boolean isBinarizeBeforeNullRemoval() {
+        return binarizeBeforeNullRemoval;
+    }
+
+    public void setBinarizeBeforeNullRemoval(boolean binarizeBeforeNullRemoval) {
+        this.binarizeBeforeNullRemoval = binarizeBeforeNullRemoval;
+    }
+
+    public long getMaxNullExpansion() {
+        return maxNullExpansion;
+    }
+
+    public void setMaxNullExpansion(long maxNullExpansion) {
+        if (maxNullExpansion < 0) {
+            throw new IllegalArgumentException("Invalid maximum null expansion: " + maxNullExpansion);
+        }
+        this.maxNullExpansion = maxNullExpansion;
+    }
+
+    // Run the per-non-terminal work of every pass on the pool. The result is identical to the sequential one.
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        this.pool = pool;
+    }
+}
@@ -0,0 +1,147 @@
+package com.labs.lab5;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The filled CYK table of one input. It is a packed parse forest: a node is a non-terminal over a
+// span and its alternatives are the (split, A -> B C) pairs whose children are both in the table,
+// so trees are only expanded when they are asked for.
+public class ParseForest {
+    private static final String EPSILON = "ε";
+
+    private final CYKParser parser;
+    private final List<String> input;
+    private final long[] table;
+    private final int length;
+
+    ParseForest(CYKParser parser, List<String> input, long[] table) {
+        this.parser = parser;
+        this.input = input;
+        this.table = table;
+        this.length = input.size();
+    }
+
+    public boolean isAccepted() {
+        return length == 0 ? parser.acceptsEmpty() : contains(parser.getStartIndex(), 0, length);
+    }
+
+    // Non-terminals deriving input[start, start + span)
+    public Set<String> getNonTerminals(int start, int span) {
+        if (start < 0 || span < 1 || start + span > length) {
+            throw new IllegalArgumentException("Invalid span: start " + start + ", length " + span);
+        }
+        Set<String> result = new HashSet<>();
+        int cell = parser.offset(length, start, span);
+        for (int w = 0; w < parser.getWords(); w++) {
+            long bits = table[cell + w];
+            while (bits != 0) {
+                result.add(parser.nameOf((w << 6) + Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+        return result;
+    }
+
+    public BigInteger countTrees() {
+        if (!isAccepted()) {
+            return BigInteger.ZERO;
+        }
+        if (length == 0) {
+            return BigInteger.ONE;
+        }
+        return count(parser.getStartIndex(), 0, length, new HashMap<>());
+    }
+
+    public ParseTree getTree() {
+        List<ParseTree> trees = getTrees(1);
+        return trees.isEmpty() ? null : trees.get(0);
+    }
+
+    // At most limit distinct derivation trees of the whole input
+    public List<ParseTree> getTrees(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid tree limit: " + limit);
+        }
+        if (limit == 0 || !isAccepted()) {
+            return new ArrayList<>();
+        }
+        String start = parser.nameOf(parser.getStartIndex());
+        if (length == 0) {
+            return new ArrayList<>(Arrays.asList(new ParseTree(start, Arrays.asList(new ParseTree(EPSILON)))));
+        }
+        return trees(parser.getStartIndex(), 0, length, limit, new HashMap<>());
+    }
+
+    private BigInteger count(int nonTerminal, int start, int span, Map<Long, BigInteger> memo) {
+        if (span == 1) {
+            return BigInteger.ONE;
+        }
+        Long key = key(nonTerminal, start, span);
+        BigInteger cached = memo.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        BigInteger total = BigInteger.ZERO;
+        for (int split = 1; split < span; split++) {
+            for (int[] rule : parser.binaryRules(nonTerminal)) {
+                if (contains(rule[0], start, split) && contains(rule[1], start + split, span - split)) {
+                    total = total.add(count(rule[0], start, split, memo)
+                            .multiply(count(rule[1], start + split, span - split, memo)));
+                }
+            }
+        }
+        memo.put(key, total);
+        return total;
+    }
+
+    private List<ParseTree> trees(int nonTerminal, int start, int span, int limit, Map<Long, List<ParseTree>> memo) {
+        String name = parser.nameOf(nonTerminal);
+        if (span == 1) {
+            return Arrays.asList(new ParseTree(name, Arrays.asList(new ParseTree(input.get(start)))));
+        }
+        Long key = key(nonTerminal, start, span);
+        List<ParseTree> cached = memo.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<ParseTree> result = new ArrayList<>();
+        for (int split = 1; split < span && result.size() < limit; split++) {
+            for (int[] rule : parser.binaryRules(nonTerminal)) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                if (!contains(rule[0], start, split) || !contains(rule[1], start + split, span - split)) {
+                    continue;
+                }
+                List<ParseTree> lefts = trees(rule[0], start, split, limit, memo);
+                List<ParseTree> rights = trees(rule[1], start + split, span - split, limit, memo);
+                for (ParseTree left : lefts) {
+                    for (ParseTree right : rights) {
+                        if (result.size() >= limit) {
+                            break;
+                        }
+                        result.add(new ParseTree(name, Arrays.asList(left, right)));
+                    }
+                }
+            }
+        }
+        memo.put(key, result);
+        return result;
+    }
+
+    private boolean contains(int nonTerminal, int start, int span) {
+        return parser.get(table, parser.offset(length, start, span), nonTerminal);
+    }
+
+    private long key(int nonTerminal, int start, int span) {
+        return ((long) nonTerminal * (length + 1) + start) * (length + 1) + span;
+    }
+}
@@ -0,0 +1,62 @@
+package com.labs.lab5;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+// A derivation tree, leaves are terminals (or ε) and have no children
+public class ParseTree {
+    private final String symbol;
+    private final List<ParseTree> children;
+
+    public ParseTree(String symbol) {
+        this(symbol, Collections.emptyList());
+    }
+
+    public ParseTree(String symbol, List<ParseTree> children) {
+        this.symbol = symbol;
+        this.children = Collections.unmodifiableList(children);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public List<ParseTree> getChildren() {
+        return children;
+    }
+
+    public boolean isLeaf() {
+        return children.isEmpty();
+    }
+
+    // Bracketed form, e.g. S(A(a) B(b)). Built with an explicit stack, trees of long inputs are deep.
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            Object next = pending.pop();
+            if (next instanceof String) {
+                sb.append((String) next);
+                continue;
+            }
+            ParseTree tree = (ParseTree) next;
+            sb.append(tree.symbol);
+            if (tree.children.isEmpty()) {
+                continue;
+            }
+            sb.append('(');
+            pending.push(")");
+            for (int i = tree.children.size() - 1; i >= 0; i--) {
+                pending.push(tree.children.get(i));
+                if (i > 0) {
+                    pending.push(" ");
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package com.labs.lab5;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Maps grammar symbol names to dense int ids, so productions can be stored as int arrays
+public class SymbolTable {
+    private final List<String> names;
+    private final Map<String, Integer> ids;
+
+    public SymbolTable() {
+        this.names = new ArrayList<>();
+        this.ids = new HashMap<>();
+    }
+
+    private SymbolTable(SymbolTable other) {
+        this.names = new ArrayList<>(other.names);
+        this.ids = new HashMap<>(other.ids);
+    }
+
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    // Returns -1 for unknown names
+    public int id(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String name(int id) {
+        return names.get(id);
+    }
+
+    public boolean contains(String name) {
+        return ids.containsKey(name);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public SymbolTable copy() {
+        return new SymbolTable(this);
+    }
+}
@@ -0,0 +1,106 @@
+package com.labs.lab5;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// CYK on the normalized grammar against Earley on the original one. Earley needs no normal form, so
+// any word the two disagree on points at normalization or at the CYK table. Null removal drops ε
+// from the language, so only non-empty words are compared.
+class CYKParserTest {
+    private static final List<String> NON_TERMINALS = List.of("S", "A", "B", "C");
+    private static final List<String> TERMINALS = List.of("a", "b");
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutDownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void randomGrammarsMatchEarley() {
+        assertSameLanguage(34, new NormalizationOptions());
+    }
+
+    @Test
+    void binarizingBeforeNullRemovalMatchesEarley() {
+        NormalizationOptions options = new NormalizationOptions();
+        options.setBinarizeBeforeNullRemoval(true);
+        assertSameLanguage(36, options);
+    }
+
+    @Test
+    void parallelNormalizationMatchesEarley() {
+        NormalizationOptions options = new NormalizationOptions();
+        options.setParallel(true);
+        options.setPool(pool);
+        assertSameLanguage(31, options);
+    }
+
+    // The same grammars and words every run, so a failure can be reproduced from the seed
+    private static void assertSameLanguage(long seed, NormalizationOptions options) {
+        Random random = new Random(seed);
+        for (int g = 0; g < 500; g++) {
+            Grammar grammar = randomGrammar(random);
+            EarleyParser earley = new EarleyParser(grammar);
+            Grammar normalized;
+            try {
+                normalized = grammar.normalize(options);
+            } catch (IllegalArgumentException e) {
+                // The start symbol derives no non-empty word and is removed as non-productive
+                for (int w = 0; w < 30; w++) {
+                    List<String> word = randomWord(random, 7);
+                    assertFalse(earley.accepts(word), "word " + word + " of grammar\n" + grammar);
+                }
+                continue;
+            }
+            CYKParser cyk = new CYKParser(normalized);
+            for (int w = 0; w < 30; w++) {
+                List<String> word = randomWord(random, 7);
+                assertEquals(earley.accepts(word), cyk.accepts(word), "word " + word + " of grammar\n" + grammar);
+            }
+        }
+    }
+
+    // Every non-terminal gets one to three productions of up to three symbols, ε included
+    private static Grammar randomGrammar(Random random) {
+        Map<String, Set<String>> rules = new HashMap<>();
+        for (String nonTerminal : NON_TERMINALS) {
+            Set<String> productions = new HashSet<>();
+            int count = 1 + random.nextInt(3);
+            for (int p = 0; p < count; p++) {
+                List<String> symbols = new ArrayList<>();
+                int length = random.nextInt(4);
+                for (int i = 0; i < length; i++) {
+                    symbols.add(random.nextBoolean()
+                            ? NON_TERMINALS.get(random.nextInt(NON_TERMINALS.size()))
+                            : TERMINALS.get(random.nextInt(TERMINALS.size())));
+                }
+                productions.add(symbols.isEmpty() ? "ε" : String.join(" ", symbols));
+            }
+            rules.put(nonTerminal, productions);
+        }
+        return new Grammar(new HashSet<>(NON_TERMINALS), new HashSet<>(TERMINALS), rules, "S");
+    }
+
+    private static List<String> randomWord(Random random, int maxLength) {
+        List<String> word = new ArrayList<>();
+        int length = 1 + random.nextInt(maxLength);
+        for (int i = 0; i < length; i++) {
+            word.add(TERMINALS.get(random.nextInt(TERMINALS.size())));
+        }
+        return word;
+    }
+}
@@ -121,6 +121,26 @@ public class FiniteAutomaton {
         return new FiniteAutomaton(new ArrayList<>(sigma), dfaStates, String.join("_", initialStateSet), dfaFinalStates, dfaTransitions);
     }
 
+    public List<String> getAlphabet() {
+        return alphabet;
+    }
+
+    public List<String> getStates() {
+        return states;
+    }
+
+    public String getInitialState() {
+        return initialState;
+    }
+
+    public Set<String> getFinalStates() {
+        return finalStates;
+    }
+
+    public Map<Transition, List<String>> getTransitions() {
+        return transitions;
+    }
+
     @Override
     public String toString() {
         String result = "Q = {" + String.join(", ", this.states) + "}";
@@ -0,0 +1,73 @@
+package com.labs.lab3
+
+// Gives every distinct identifier name a small id. Names are looked up straight from a range of the
+// source, so a String is only built the first time a name is seen and shared after that.
+class IdentifierTable {
+    private val names = ArrayList<String>()
+    private var hashes = IntArray(16)
+    private var slots = IntArray(64) { -1 }
+
+    val size: Int
+        get() = names.size
+
+    fun intern(source: CharSequence, start: Int, end: Int): Int {
+        var hash = 0
+        for (i in start until end) {
+            hash = 31 * hash + source[i].code
+        }
+        val mask = slots.size - 1
+        var slot = mix(hash) and mask
+        while (true) {
+            val id = slots[slot]
+            if (id < 0) {
+                break
+            }
+            if (hashes[id] == hash && sameName(names[id], source, start, end)) {
+                return id
+            }
+            slot = (slot + 1) and mask
+        }
+
+        val id = names.size
+        names.add(source.subSequence(start, end).toString())
+        if (id == hashes.size) {
+            hashes = hashes.copyOf(id * 2)
+        }
+        hashes[id] = hash
+        slots[slot] = id
+        if (names.size * 2 > slots.size) {
+            rehash()
+        }
+        return id
+    }
+
+    fun name(id: Int): String {
+        return names[id]
+    }
+
+    private fun sameName(name: String, source: CharSequence, start: Int, end: Int): Boolean {
+        if (name.length != end - start) {
+            return false
+        }
+        for (i in name.indices) {
+            if (name[i] != source[start + i]) return false
+        }
+        return true
+    }
+
+    private fun rehash() {
+        slots = IntArray(slots.size * 2) { -1 }
+        val mask = slots.size - 1
+        for (id in names.indices) {
+            var slot = mix(hashes[id]) and mask
+            while (slots[slot] >= 0) {
+                slot = (slot + 1) and mask
+            }
+            slots[slot] = id
+        }
+    }
+
+    private fun mix(hash: Int): Int {
+        return hash xor (hash ushr 16)
+    }
+}
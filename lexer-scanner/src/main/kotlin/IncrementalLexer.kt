@@ -0,0 +1,260 @@
+package com.labs.lab3
+
+// The tokens an edit replaced: from index on, removed old tokens were replaced by inserted new ones
+class TokenChange(val index: Int, val removed: Int, val inserted: Int)
+
+// Keeps the tokens of a document up to date under text edits. An edit is re-lexed from the last token
+// the scanner could not have seen the edit from, and only until a new token starts where an old one
+// did past the edit; from there the old tokens are kept, with offsets, lines and columns shifted.
+//
+// Restarts only happen at tokens without a line break. Lexer reports a multi-line string or comment
+// at the column after its last line break, so the state it started in cannot be recovered from it.
+class IncrementalLexer(source: String, private val table: ScannerTable = TableLexer.SCRIPT_TABLE) {
+    var source: String = source
+        private set
+
+    private var tokens = TokenRun(64)
+
+    init {
+        scan(Scan(source, 0, 1, 1, 0), tokens, -1, 0, 0)
+    }
+
+    val tokenCount: Int
+        get() = tokens.size
+
+    fun token(index: Int): Token {
+        if (index < 0 || index >= tokens.size) {
+            throw IndexOutOfBoundsException("Token index $index out of bounds for size ${tokens.size}")
+        }
+        return tokens.token(source, index)
+    }
+
+    fun start(index: Int): Int {
+        if (index < 0 || index >= tokens.size) {
+            throw IndexOutOfBoundsException("Token index $index out of bounds for size ${tokens.size}")
+        }
+        return tokens.starts[index]
+    }
+
+    fun tokens(): List<Token> {
+        return (0 until tokens.size).map { tokens.token(source, it) }
+    }
+
+    // Replaces removedLength characters at offset with inserted
+    fun edit(offset: Int, removedLength: Int, inserted: String): TokenChange {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > source.length) {
+            throw IllegalArgumentException("Invalid edit: offset $offset, removed $removedLength, length ${source.length}")
+        }
+        val old = source
+        val text = StringBuilder(old.length - removedLength + inserted.length)
+            .append(old, 0, offset).append(inserted).append(old, offset + removedLength, old.length).toString()
+        val delta = inserted.length - removedLength
+
+        // Restart point: a single-line token that nothing before it looked past the edit from
+        var restart = lastStartingAtOrBefore(offset)
+        while (restart >= 0 && (tokens.reaches[restart] > offset || hasLineBreak(old, restart))) {
+            restart--
+        }
+        val scan = if (restart < 0) {
+            restart = 0
+            Scan(text, 0, 1, 1, 0)
+        } else {
+            Scan(text, tokens.starts[restart], tokens.lines[restart], tokens.columns[restart], tokens.reaches[restart])
+        }
+
+        val fresh = TokenRun(16)
+        val synced = scan(scan, fresh, restart, offset + removedLength, delta)
+        val removed = (if (synced < 0) tokens.size else synced) - restart
+
+        if (synced < 0) {
+            tokens.replace(restart, tokens.size, fresh)
+        } else {
+            // The token at the sync point came out equal apart from its position, fix up the rest the same way
+            val syncLine = tokens.lines[synced]
+            val lineShift = fresh.lines[fresh.size] - syncLine
+            val columnShift = fresh.columns[fresh.size] - tokens.columns[synced]
+            val reachBefore = fresh.reaches[fresh.size]
+            tokens.replace(restart, synced, fresh)
+
+            var i = restart + fresh.size
+            var sameLine = true
+            while (i < tokens.size) {
+                sameLine = sameLine && tokens.lines[i] == syncLine
+                tokens.starts[i] += delta
+                tokens.lines[i] += lineShift
+                if (sameLine) {
+                    tokens.columns[i] += columnShift
+                }
+                tokens.reaches[i] = if (i == restart + fresh.size) reachBefore
+                else maxOf(tokens.reaches[i - 1], tokens.starts[i - 1] + tokens.lookaheads[i - 1])
+                i++
+            }
+        }
+        source = text
+        return TokenChange(restart, removed, fresh.size)
+    }
+
+    // Lexes into out until the end of the text, or until a token starts at the position of an old
+    // token at or past oldEditEnd (in old coordinates, new ones are delta further). Returns the index
+    // of that old token, the token itself is left just past out.size, or -1 at the end of the text.
+    private fun scan(scan: Scan, out: TokenRun, oldIndex: Int, oldEditEnd: Int, delta: Int): Int {
+        var old = oldIndex
+        val text = scan.text
+        while (true) {
+            val start = scan.position
+            if (start >= text.length) {
+                out.add(TokenType.EOF.ordinal, start, 0, scan.line, scan.column, scan.reach, 0)
+                return -1
+            }
+            val extent = table.reach(text, start)
+            val match = table.match(text, start)
+            val rule = (match shr 32).toInt()
+            val reachBefore = scan.reach
+            scan.reach = maxOf(scan.reach, extent)
+
+            val type: TokenType?
+            if (rule < 0) {
+                scan.position++
+                scan.column++
+                type = TokenType.UNKNOWN
+            } else {
+                scan.position = match.toInt()
+                val tokenRule = table.rules[rule]
+                if (tokenRule.action == RuleAction.NEWLINE) {
+                    scan.line++
+                    scan.column = 0
+                } else {
+                    advanceColumns(scan, start, table.isMultiline(rule))
+                }
+                type = if (tokenRule.action == RuleAction.EMIT) tokenRule.type else null
+            }
+
+            if (type == null) {
+                // Skipped text counts as looked at by the token before it
+                if (out.size > 0) {
+                    val last = out.size - 1
+                    out.lookaheads[last] = maxOf(out.lookaheads[last], extent - out.starts[last])
+                }
+                continue
+            }
+            val length = scan.position - start
+            out.add(type.ordinal, start, length, scan.line, scan.column - length, reachBefore, extent - start)
+
+            if (oldIndex >= 0 && start - delta >= oldEditEnd) {
+                while (old < tokens.size - 1 && tokens.starts[old] < start - delta) {
+                    old++
+                }
+                if (old < tokens.size - 1 && tokens.starts[old] == start - delta) {
+                    out.size--
+                    return old
+                }
+            }
+        }
+    }
+
+    private fun advanceColumns(scan: Scan, start: Int, multiline: Boolean) {
+        if (multiline) {
+            for (i in start until scan.position) {
+                if (scan.text[i] == '\n') {
+                    scan.line++
+                    scan.column = 1
+                } else {
+                    scan.column++
+                }
+            }
+        } else {
+            scan.column += scan.position - start
+        }
+    }
+
+    // Last token other than EOF starting at or before offset, -1 if there is none
+    private fun lastStartingAtOrBefore(offset: Int): Int {
+        var low = 0
+        var high = tokens.size - 2
+        var result = -1
+        while (low <= high) {
+            val middle = (low + high) ushr 1
+            if (tokens.starts[middle] <= offset) {
+                result = middle
+                low = middle + 1
+            } else {
+                high = middle - 1
+            }
+        }
+        return result
+    }
+
+    private fun hasLineBreak(text: String, index: Int): Boolean {
+        val start = tokens.starts[index]
+        for (i in start until start + tokens.lengths[index]) {
+            if (text[i] == '\n') return true
+        }
+        return false
+    }
+
+    private class Scan(val text: String, var position: Int, var line: Int, var column: Int, var reach: Int)
+
+    // Tokens in parallel arrays. reaches[i] is the furthest index (exclusive) looked at before token i
+    // started, lookaheads[i] how far past its start token i and the skipped text after it were looked at.
+    private class TokenRun(capacity: Int) {
+        var size = 0
+        var types = IntArray(capacity)
+        var starts = IntArray(capacity)
+        var lengths = IntArray(capacity)
+        var lines = IntArray(capacity)
+        var columns = IntArray(capacity)
+        var reaches = IntArray(capacity)
+        var lookaheads = IntArray(capacity)
+
+        fun add(type: Int, start: Int, length: Int, line: Int, column: Int, reach: Int, lookahead: Int) {
+            ensureCapacity(size + 1)
+            types[size] = type
+            starts[size] = start
+            lengths[size] = length
+            lines[size] = line
+            columns[size] = column
+            reaches[size] = reach
+            lookaheads[size] = lookahead
+            size++
+        }
+
+        fun token(source: String, index: Int): Token {
+            return Token(TOKEN_TYPES[types[index]], source.substring(starts[index], starts[index] + lengths[index]),
+                lines[index], columns[index])
+        }
+
+        // Replaces the tokens in [from, to) with all of other's
+        fun replace(from: Int, to: Int, other: TokenRun) {
+            val newSize = size - (to - from) + other.size
+            ensureCapacity(newSize)
+            val tail = size - to
+            for (array in arrayOf(types, starts, lengths, lines, columns, reaches, lookaheads)) {
+                System.arraycopy(array, to, array, from + other.size, tail)
+            }
+            System.arraycopy(other.types, 0, types, from, other.size)
+            System.arraycopy(other.starts, 0, starts, from, other.size)
+            System.arraycopy(other.lengths, 0, lengths, from, other.size)
+            System.arraycopy(other.lines, 0, lines, from, other.size)
+            System.arraycopy(other.columns, 0, columns, from, other.size)
+            System.arraycopy(other.reaches, 0, reaches, from, other.size)
+            System.arraycopy(other.lookaheads, 0, lookaheads, from, other.size)
+            size = newSize
+        }
+
+        private fun ensureCapacity(capacity: Int) {
+            if (capacity <= types.size) return
+            val grown = maxOf(capacity, types.size * 2)
+            types = types.copyOf(grown)
+            starts = starts.copyOf(grown)
+            lengths = lengths.copyOf(grown)
+            lines = lines.copyOf(grown)
+            columns = columns.copyOf(grown)
+            reaches = reaches.copyOf(grown)
+            lookaheads = lookaheads.copyOf(grown)
+        }
+    }
+
+    companion object {
+        private val TOKEN_TYPES = TokenType.values()
+    }
+}
@@ -0,0 +1,62 @@
+package com.labs.lab3
+
+// Keyword lookup straight on a range of the source. A keyword is found by a perfect hash of its
+// length, first and last character, then compared in place, so no lexeme String is built.
+//
+// match() returns the keyword's index in WORDS, and each module maps that index to its own
+// TokenType, so lexer-scanner and parser-ast-build share the one table.
+object Keywords {
+    val WORDS = listOf(
+        "var", "if", "else", "for", "in", "fetch", "select", "xpath", "text", "attr", "html", "save", "print", "true", "false"
+    )
+
+    private const val TABLE_SIZE = 32
+
+    // Precomputed: the smallest multiplier that puts every keyword above in its own slot. Adding a
+    // keyword may need a new one.
+    private const val MULTIPLIER = 5
+    private val MIN_LENGTH = WORDS.minOf { it.length }
+    private val MAX_LENGTH = WORDS.maxOf { it.length }
+
+    private val words = arrayOfNulls<String>(TABLE_SIZE)
+    private val indexes = IntArray(TABLE_SIZE)
+
+    init {
+        val clash = place()
+        require(clash == null) { "Keywords $clash share a slot, MULTIPLIER has to be recomputed" }
+    }
+
+    // Index of source[start, end) in WORDS, -1 if it is not a keyword
+    fun match(source: CharSequence, start: Int, end: Int): Int {
+        val length = end - start
+        if (length < MIN_LENGTH || length > MAX_LENGTH) {
+            return -1
+        }
+        val slot = slot(source[start], source[end - 1], length)
+        val word = words[slot] ?: return -1
+        if (word.length != length) {
+            return -1
+        }
+        for (i in 0 until length) {
+            if (source[start + i] != word[i]) return -1
+        }
+        return indexes[slot]
+    }
+
+    // Fills the table, returns the first two keywords that land in the same slot or null
+    private fun place(): String? {
+        for ((index, word) in WORDS.withIndex()) {
+            val slot = slot(word[0], word[word.length - 1], word.length)
+            if (words[slot] != null) {
+                return "'${words[slot]}' and '$word'"
+            }
+            words[slot] = word
+            indexes[slot] = index
+        }
+        return null
+    }
+
+    private fun slot(first: Char, last: Char, length: Int): Int {
+        return ((first.code * MULTIPLIER) xor (last.code * 31 + length)) and (TABLE_SIZE - 1)
+    }
+}
@@ -32,39 +32,35 @@ data class Token(
     val column: Int
 )
 
-class Lexer(private val source: String) {
+fun TokenBuffer<TokenType>.toTokens(): List<Token> = toTokens(::Token)
+
+// fastPaths jumps over string bodies, comments and blank runs with String.indexOf, which the JVM
+// runs as a vectorized intrinsic; without it every character goes through advance() one at a time.
+class Lexer(private val source: String, private val fastPaths: Boolean = true) {
     private var start = 0
     private var current = 0
     private var line = 1
     private var column = 1
+    private var nextLineBreak = -1
     private val tokens = mutableListOf<Token>()
-
-    private val keywords = mapOf(
-        "var" to TokenType.VAR,
-        "if" to TokenType.IF,
-        "else" to TokenType.ELSE,
-        "for" to TokenType.FOR,
-        "in" to TokenType.IN,
-        "fetch" to TokenType.FETCH,
-        "select" to TokenType.SELECT,
-        "xpath" to TokenType.XPATH,
-        "text" to TokenType.TEXT,
-        "attr" to TokenType.ATTR,
-        "html" to TokenType.HTML,
-        "save" to TokenType.SAVE,
-        "print" to TokenType.PRINT,
-        "true" to TokenType.BOOLEAN,
-        "false" to TokenType.BOOLEAN
-    )
+    private val buffer = TokenBuffer(source, TokenType.values())
 
     fun tokenize(): List<Token> {
+        tokenizeToBuffer()
+        tokens.clear()
+        tokens.addAll(buffer.toTokens())
+        return tokens
+    }
+
+    // Same tokens as tokenize(), kept as offsets into the source
+    fun tokenizeToBuffer(): TokenBuffer<TokenType> {
         while (!isAtEnd()) {
             start = current
             scanToken()
         }
 
-        tokens.add(Token(TokenType.EOF, "", line, column))
-        return tokens
+        buffer.add(TokenType.EOF, current, 0, line, column)
+        return buffer
     }
 
     private fun scanToken() {
@@ -87,12 +83,19 @@ class Lexer(private val source: String) {
             '/' -> {
                 if (match('/')) {
                     // Single line comment
+                    if (fastPaths) {
+                        skipTo(nextLineBreak(current))
+                    }
                     while (peek() != '\n' && !isAtEnd()) {
                         advance()
                     }
                     addToken(TokenType.COMMENT)
                 } else if (match('*')) {
                     // Multi-line comment
+                    if (fastPaths) {
+                        val close = source.indexOf("*/", current)
+                        skipTo(if (close < 0) source.length else close)
+                    }
                     while (!(peek() == '*' && peekNext() == '/') && !isAtEnd()) {
                         if (peek() == '\n') {
                             line++
@@ -166,6 +169,12 @@ class Lexer(private val source: String) {
             }
             ' ', '\r', '\t' -> {
                 // Skip whitespace without creating tokens
+                if (fastPaths) {
+                    while (current < source.length && (source[current] == ' ' || source[current] == '\t' || source[current] == '\r')) {
+                        current++
+                        column++
+                    }
+                }
             }
             else -> {
                 if (isDigit(c)) {
@@ -181,6 +190,10 @@ class Lexer(private val source: String) {
     }
 
     private fun string() {
+        if (fastPaths) {
+            val close = source.indexOf('"', current)
+            skipTo(if (close < 0) source.length else close)
+        }
         while (peek() != '"' && !isAtEnd()) {
             if (peek() == '\n') {
                 line++
@@ -198,8 +211,6 @@ class Lexer(private val source: String) {
         // Consume the closing "
         advance()
 
-        // Get the string value (without the quotes)
-        val value = source.substring(start + 1, current - 1)
         addToken(TokenType.STRING)
     }
 
@@ -226,10 +237,36 @@ class Lexer(private val source: String) {
             advance()
         }
 
-        val text = source.substring(start, current)
-        val type = keywords[text] ?: TokenType.IDENTIFIER
+        val keyword = Keywords.match(source, start, current)
+        if (keyword >= 0) {
+            addToken(KEYWORD_TYPES[keyword])
+        } else {
+            val length = current - start
+            buffer.add(TokenType.IDENTIFIER, start, length, line, column - length, buffer.identifiers.intern(source, start, current))
+        }
+    }
 
-        addToken(type)
+    // Moves current to end inside a token, with the line and column advance() would leave
+    private fun skipTo(end: Int) {
+        var lineStart = -1
+        var lineBreak = nextLineBreak(current)
+        while (lineBreak < end) {
+            line++
+            lineStart = lineBreak + 1
+            lineBreak = nextLineBreak(lineStart)
+        }
+        column = if (lineStart < 0) column + (end - current) else 1 + (end - lineStart)
+        current = end
+    }
+
+    // Index of the first line break at or after from, the source length if there is none. The lexer
+    // only moves forward, so the last answer is reused until it is passed and the source is searched once.
+    private fun nextLineBreak(from: Int): Int {
+        if (nextLineBreak < from) {
+            val found = source.indexOf('\n', from)
+            nextLineBreak = if (found < 0) source.length else found
+        }
+        return nextLineBreak
     }
 
     private fun match(expected: Char): Boolean {
@@ -269,8 +306,8 @@ class Lexer(private val source: String) {
     }
 
     private fun addToken(type: TokenType) {
-        val lexeme = source.substring(start, current)
-        tokens.add(Token(type, lexeme, line, column - lexeme.length))
+        val length = current - start
+        buffer.add(type, start, length, line, column - length)
     }
 
     private fun isAtEnd(): Boolean {
@@ -280,6 +317,15 @@ class Lexer(private val source: String) {
     override fun toString(): String {
         return tokens.joinToString(separator = "\n")
     }
+
+    companion object {
+        // Token type of each keyword, in the order of Keywords.WORDS
+        private val KEYWORD_TYPES = arrayOf(
+            TokenType.VAR, TokenType.IF, TokenType.ELSE, TokenType.FOR, TokenType.IN,
+            TokenType.FETCH, TokenType.SELECT, TokenType.XPATH, TokenType.TEXT, TokenType.ATTR,
+            TokenType.HTML, TokenType.SAVE, TokenType.PRINT, TokenType.BOOLEAN, TokenType.BOOLEAN
+        )
+    }
 }
 
 fun main() {
@@ -0,0 +1,269 @@
+package com.labs.lab3
+
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
+import java.util.concurrent.RecursiveAction
+
+// Lexes a large source in chunks on a ForkJoinPool, with the same tokens as Lexer and TableLexer.
+//
+// Chunks end right after a line break. In the script language the only tokens that cross a line
+// break are strings (terminated or not) and block comments, so a chunk can be entered in one of three
+// states. Every chunk is lexed for each of them in parallel, then the results are stitched left to
+// right: the exit state of one chunk picks the speculation used for the next, and tokens that span
+// chunks are put together from where they started and where their continuation ends.
+class ParallelLexer(
+    private val source: String,
+    private val pool: ForkJoinPool = ForkJoinPool.commonPool(),
+    private val chunkSize: Int = 1 shl 16
+) {
+    private val table = TableLexer.SCRIPT_TABLE
+    private val tokens = mutableListOf<Token>()
+
+    fun tokenize(): List<Token> {
+        tokens.clear()
+        tokens.addAll(tokenizeToBuffer().toTokens())
+        return tokens
+    }
+
+    fun tokenizeToBuffer(): TokenBuffer<TokenType> {
+        val bounds = chunkBounds()
+        val chunkCount = bounds.size - 1
+        if (chunkCount < 2) {
+            return TableLexer(source).tokenizeToBuffer()
+        }
+
+        val results = arrayOfNulls<Chunk>(chunkCount * STATES)
+        val lineCounts = IntArray(chunkCount)
+        val tasks = ArrayList<ForkJoinTask<*>>(chunkCount * STATES + chunkCount)
+        for (chunk in 0 until chunkCount) {
+            val from = bounds[chunk]
+            val to = bounds[chunk + 1]
+            val last = chunk == chunkCount - 1
+            tasks.add(ForkJoinTask.adapt(Runnable { lineCounts[chunk] = countLineBreaks(from, to) }))
+            for (state in 0 until STATES) {
+                // The first chunk starts outside of any token
+                if (chunk == 0 && state != NORMAL) continue
+                tasks.add(ForkJoinTask.adapt(Runnable { results[chunk * STATES + state] = lexChunk(from, to, state, chunk == 0, last) }))
+            }
+        }
+        pool.invoke(object : RecursiveAction() {
+            override fun compute() {
+                invokeAll(tasks)
+            }
+        })
+
+        return stitch(bounds, results, lineCounts)
+    }
+
+    private fun stitch(bounds: IntArray, results: Array<Chunk?>, lineCounts: IntArray): TokenBuffer<TokenType> {
+        val buffer = TokenBuffer(source, TOKEN_TYPES, 1024)
+        var state = NORMAL
+        var pendingStart = -1
+        var line = 1
+        var endColumn = 1
+        for (chunk in 0 until bounds.size - 1) {
+            val result = results[chunk * STATES + state]!!
+            if (state != NORMAL && result.continuationEnd >= 0) {
+                // The token that was open at the chunk start ends here
+                val end = result.continuationEnd
+                val type = if (state == IN_COMMENT) TokenType.COMMENT else TokenType.STRING
+                buffer.add(type, pendingStart, end - pendingStart, line + result.continuationLines,
+                    pendingStart - source.lastIndexOf('\n', end - 1))
+                pendingStart = -1
+            }
+            for (i in 0 until result.size) {
+                val start = result.starts[i]
+                val name = if (result.types[i] == IDENTIFIER) buffer.identifiers.intern(source, start, start + result.lengths[i]) else -1
+                buffer.add(TOKEN_TYPES[result.types[i]], start, result.lengths[i], line + result.lines[i], result.columns[i], name)
+            }
+            if (result.exitState != NORMAL && result.pendingStart >= 0) {
+                pendingStart = result.pendingStart
+            }
+            state = result.exitState
+            endColumn = result.endColumn
+            line += lineCounts[chunk]
+        }
+
+        if (state != NORMAL) {
+            // Unterminated since an earlier chunk: a comment runs to the end, a string is dropped
+            if (state == IN_COMMENT) {
+                buffer.add(TokenType.COMMENT, pendingStart, source.length - pendingStart, line,
+                    pendingStart - source.lastIndexOf('\n', source.length - 1))
+            }
+            endColumn = source.length - source.lastIndexOf('\n', source.length - 1)
+        }
+        buffer.add(TokenType.EOF, source.length, 0, line, endColumn)
+        return buffer
+    }
+
+    // Lexes [from, to) entered in the given state. A chunk entered inside a string or comment first
+    // looks for where that token ends; if it does not end here, the whole chunk belongs to it.
+    private fun lexChunk(from: Int, to: Int, entryState: Int, first: Boolean, last: Boolean): Chunk {
+        val result = Chunk()
+        var position = from
+        var line = 0
+        // A line break between tokens leaves the column at 0, one inside a token at 1
+        var column = if (first) 1 else if (entryState == NORMAL) 0 else 1
+
+        if (entryState != NORMAL) {
+            val end = if (entryState == IN_STRING) stringEnd(from, to) else commentEnd(from, to)
+            if (end < 0) {
+                result.exitState = entryState
+                result.endColumn = -1
+                return result
+            }
+            result.continuationEnd = end
+            for (i in from until end) {
+                if (source[i] == '\n') {
+                    line++
+                    column = 1
+                } else {
+                    column++
+                }
+            }
+            result.continuationLines = line
+            position = end
+        }
+
+        val window = Prefix(source, to)
+        while (position < to) {
+            val start = position
+            if (source[start] == '\n') {
+                position++
+                line++
+                column = 0
+                continue
+            }
+            val match = table.match(window, start, last)
+            if (match == ScannerTable.MORE_INPUT) {
+                // Only strings and block comments live on past the line break that ends the chunk
+                result.exitState = if (source[start] == '"') IN_STRING else IN_COMMENT
+                result.pendingStart = start
+                result.endColumn = -1
+                return result
+            }
+            val rule = (match shr 32).toInt()
+            if (rule < 0) {
+                position++
+                column++
+                result.add(TokenType.UNKNOWN.ordinal, start, 1, line, column - 1)
+                continue
+            }
+            position = match.toInt()
+            val tokenRule = table.rules[rule]
+            if (tokenRule.action == RuleAction.NEWLINE) {
+                line++
+                column = 0
+                continue
+            }
+            if (table.isMultiline(rule)) {
+                for (i in start until position) {
+                    if (source[i] == '\n') {
+                        line++
+                        column = 1
+                    } else {
+                        column++
+                    }
+                }
+            } else {
+                column += position - start
+            }
+            if (tokenRule.action == RuleAction.EMIT) {
+                result.add(tokenRule.type!!.ordinal, start, position - start, line, column - (position - start))
+            }
+        }
+        result.exitState = NORMAL
+        result.endColumn = column
+        return result
+    }
+
+    // Chunk boundaries, each one just past a line break
+    private fun chunkBounds(): IntArray {
+        val bounds = mutableListOf(0)
+        var target = chunkSize
+        while (target < source.length) {
+            val lineBreak = source.indexOf('\n', target - 1)
+            if (lineBreak < 0 || lineBreak + 1 >= source.length) break
+            bounds.add(lineBreak + 1)
+            target = lineBreak + 1 + chunkSize
+        }
+        bounds.add(source.length)
+        return bounds.toIntArray()
+    }
+
+    // Index past the closing quote of a string continued from before from, -1 if it is not in [from, to)
+    private fun stringEnd(from: Int, to: Int): Int {
+        for (i in from until to) {
+            if (source[i] == '"') return i + 1
+        }
+        return -1
+    }
+
+    // Index past the */ of a block comment continued from before from, -1 if it is not in [from, to)
+    private fun commentEnd(from: Int, to: Int): Int {
+        for (i in from until to - 1) {
+            if (source[i] == '*' && source[i + 1] == '/') return i + 2
+        }
+        return -1
+    }
+
+    private fun countLineBreaks(from: Int, to: Int): Int {
+        var count = 0
+        for (i in from until to) {
+            if (source[i] == '\n') count++
+        }
+        return count
+    }
+
+    // The source cut off at end, so a match cannot run into the next chunk
+    private class Prefix(private val source: String, override val length: Int) : CharSequence {
+        override fun get(index: Int): Char = source[index]
+
+        override fun subSequence(startIndex: Int, endIndex: Int): CharSequence = source.subSequence(startIndex, endIndex)
+    }
+
+    // Tokens of one chunk under one entry state. Lines are relative to the chunk start.
+    private class Chunk {
+        var size = 0
+        var types = IntArray(16)
+        var starts = IntArray(16)
+        var lengths = IntArray(16)
+        var lines = IntArray(16)
+        var columns = IntArray(16)
+        var exitState = NORMAL
+        var pendingStart = -1
+        var continuationEnd = -1
+        var continuationLines = 0
+        var endColumn = 0
+
+        fun add(type: Int, start: Int, length: Int, line: Int, column: Int) {
+            if (size == types.size) {
+                types = types.copyOf(size * 2)
+                starts = starts.copyOf(size * 2)
+                lengths = lengths.copyOf(size * 2)
+                lines = lines.copyOf(size * 2)
+                columns = columns.copyOf(size * 2)
+            }
+            types[size] = type
+            starts[size] = start
+            lengths[size] = length
+            lines[size] = line
+            columns[size] = column
+            size++
+        }
+    }
+
+    override fun toString(): String {
+        return tokens.joinToString(separator = "\n")
+    }
+
+    companion object {
+        private const val NORMAL = 0
+        private const val IN_STRING = 1
+        private const val IN_COMMENT = 2
+        private const val STATES = 3
+        private val IDENTIFIER = TokenType.IDENTIFIER.ordinal
+
+        private val TOKEN_TYPES = TokenType.values()
+    }
+}
@@ -0,0 +1,481 @@
+package com.labs.lab3
+
+import java.util.BitSet
+
+// What the scanner does with the text a rule matched. DROP consumes it like a token but emits
+// nothing, the way Lexer treats an unterminated string. NEWLINE is the line break between tokens.
+enum class RuleAction {
+    EMIT, SKIP, DROP, NEWLINE
+}
+
+// One token definition. The pattern is a regular expression (literal characters, escapes, [classes],
+// [^negated classes], ( ), |, *, + and ?) or plain text when literal is set. Earlier rules win ties.
+class TokenRule(
+    val type: TokenType?,
+    val pattern: String,
+    val literal: Boolean = false,
+    val action: RuleAction = if (type == null) RuleAction.SKIP else RuleAction.EMIT
+)
+
+// A minimized DFA over character classes. State 0 is the start state, next[state * classCount + class]
+// is the following state or -1, and accepting[state] is the winning rule index or -1.
+class ScannerTable(
+    val rules: List<TokenRule>,
+    private val asciiClasses: IntArray,
+    private val rangeStarts: IntArray,
+    private val classCount: Int,
+    private val next: IntArray,
+    private val accepting: IntArray,
+    private val multiline: BooleanArray
+) {
+    val stateCount: Int
+        get() = accepting.size
+
+    // Class of a non-ASCII character: the index of the range it falls in
+    private fun classOf(c: Int): Int {
+        var low = 0
+        var high = rangeStarts.size - 1
+        while (low < high) {
+            val middle = (low + high + 1) ushr 1
+            if (rangeStarts[middle] <= c) low = middle else high = middle - 1
+        }
+        return low
+    }
+
+    // Longest match at start, packed as (rule shl 32) or end. The rule is -1 when nothing matches.
+    fun match(source: CharSequence, start: Int): Long {
+        return match(source, start, true)
+    }
+
+    // As match(source, start), for a window of a longer input. Unless atEnd, running out of characters
+    // with the DFA still alive returns MORE_INPUT, as the longest match may continue past the window.
+    fun match(source: CharSequence, start: Int, atEnd: Boolean): Long {
+        var state = 0
+        var rule = -1
+        var end = start
+        var i = start
+        val length = source.length
+        while (true) {
+            if (i >= length) {
+                if (!atEnd) return MORE_INPUT
+                break
+            }
+            val c = source[i].code
+            state = next[state * classCount + (if (c < 128) asciiClasses[c] else classOf(c))]
+            if (state < 0) {
+                break
+            }
+            i++
+            val accepted = accepting[state]
+            if (accepted >= 0) {
+                rule = accepted
+                end = i
+            }
+        }
+        return (rule.toLong() shl 32) or end.toLong()
+    }
+
+    // Index just past the last character match() looks at from start, the length plus one when it
+    // reads to the end. A token can only change if an edit touches that range.
+    fun reach(source: CharSequence, start: Int): Int {
+        var state = 0
+        var i = start
+        val length = source.length
+        while (i < length) {
+            val c = source[i].code
+            state = next[state * classCount + (if (c < 128) asciiClasses[c] else classOf(c))]
+            i++
+            if (state < 0) {
+                return i
+            }
+        }
+        return length + 1
+    }
+
+    // Whether the rule's language contains a line break, only those lexemes are scanned for one
+    fun isMultiline(rule: Int): Boolean {
+        return multiline[rule]
+    }
+
+    companion object {
+        const val MORE_INPUT = Long.MIN_VALUE
+    }
+}
+
+// Builds a ScannerTable from token rules: regex -> Thompson NFA -> subset construction -> minimization
+object ScannerGenerator {
+    private const val MAX_CHAR = 0xFFFF
+
+    fun generate(rules: List<TokenRule>): ScannerTable {
+        val nfa = Nfa()
+        val ruleStarts = IntArray(rules.size)
+        for ((index, rule) in rules.withIndex()) {
+            val fragment = if (rule.literal) nfa.literal(rule.pattern) else RegexParser(rule.pattern, nfa).parse()
+            if (nfa.matchesEmpty(fragment)) {
+                throw IllegalArgumentException("Token pattern matches the empty string: ${rule.pattern}")
+            }
+            nfa.accept[fragment.end] = index
+            ruleStarts[index] = fragment.start
+        }
+
+        // Character classes: maximal ranges no pattern distinguishes between
+        val boundaries = sortedSetOf(0)
+        for (set in nfa.sets) {
+            for (i in set.indices step 2) {
+                boundaries.add(set[i])
+                if (set[i + 1] < MAX_CHAR) boundaries.add(set[i + 1] + 1)
+            }
+        }
+        val rangeStarts = boundaries.toIntArray()
+        val classCount = rangeStarts.size
+        val asciiClasses = IntArray(128)
+        var range = 0
+        for (c in 0 until 128) {
+            while (range + 1 < classCount && rangeStarts[range + 1] <= c) range++
+            asciiClasses[c] = range
+        }
+        val transitionClasses = nfa.sets.map { set ->
+            val classes = BitSet(classCount)
+            for (i in set.indices step 2) {
+                var cls = rangeStarts.binarySearch(set[i])
+                while (cls < classCount && rangeStarts[cls] <= set[i + 1]) {
+                    classes.set(cls)
+                    cls++
+                }
+            }
+            classes
+        }
+
+        val dfa = determinize(nfa, ruleStarts, transitionClasses, classCount)
+        val (next, accepting) = minimize(dfa.first, dfa.second, classCount)
+        val multiline = BooleanArray(rules.size) { newlineReachable(nfa, ruleStarts[it]) }
+        return ScannerTable(rules, asciiClasses, rangeStarts, classCount, next, accepting, multiline)
+    }
+
+    // Subset construction. Returns the complete transition table (-1 is the dead state) and accepting rules.
+    private fun determinize(nfa: Nfa, ruleStarts: IntArray, transitionClasses: List<BitSet>, classCount: Int): Pair<IntArray, IntArray> {
+        val startSet = BitSet()
+        ruleStarts.forEach { startSet.set(it) }
+        nfa.closure(startSet)
+
+        val ids = HashMap<BitSet, Int>()
+        val states = mutableListOf<BitSet>()
+        ids[startSet] = 0
+        states.add(startSet)
+        var next = IntArray(classCount * 16)
+        val accepting = mutableListOf<Int>()
+
+        var index = 0
+        while (index < states.size) {
+            val set = states[index]
+            var rule = -1
+            var s = set.nextSetBit(0)
+            while (s >= 0) {
+                val accepted = nfa.accept[s]
+                if (accepted >= 0 && (rule < 0 || accepted < rule)) rule = accepted
+                s = set.nextSetBit(s + 1)
+            }
+            accepting.add(rule)
+
+            if ((index + 1) * classCount > next.size) next = next.copyOf(next.size * 2)
+            for (cls in 0 until classCount) {
+                val target = BitSet()
+                s = set.nextSetBit(0)
+                while (s >= 0) {
+                    for (t in nfa.moves[s]) {
+                        if (transitionClasses[t.set][cls]) target.set(t.target)
+                    }
+                    s = set.nextSetBit(s + 1)
+                }
+                if (target.isEmpty) {
+                    next[index * classCount + cls] = -1
+                    continue
+                }
+                nfa.closure(target)
+                next[index * classCount + cls] = ids.getOrPut(target) {
+                    states.add(target)
+                    states.size - 1
+                }
+            }
+            index++
+        }
+        return Pair(next.copyOf(states.size * classCount), accepting.toIntArray())
+    }
+
+    // Moore partition refinement, starting from one block per accepted rule. The start state keeps id 0.
+    private fun minimize(next: IntArray, accepting: IntArray, classCount: Int): Pair<IntArray, IntArray> {
+        val stateCount = accepting.size
+        var block = IntArray(stateCount) { accepting[it] + 1 }
+        var blockCount = -1
+        while (true) {
+            val signatures = HashMap<List<Int>, Int>()
+            val refined = IntArray(stateCount)
+            for (state in 0 until stateCount) {
+                val signature = ArrayList<Int>(classCount + 1)
+                signature.add(block[state])
+                for (cls in 0 until classCount) {
+                    val target = next[state * classCount + cls]
+                    signature.add(if (target < 0) -1 else block[target])
+                }
+                refined[state] = signatures.getOrPut(signature) { signatures.size }
+            }
+            // Blocks only ever split, so the same number of blocks means nothing changed
+            val stable = signatures.size == blockCount
+            blockCount = signatures.size
+            block = refined
+            if (stable) break
+        }
+
+        // Renumber so the start state's block comes first
+        val order = IntArray(blockCount) { -1 }
+        var count = 0
+        for (state in 0 until stateCount) {
+            if (order[block[state]] < 0) order[block[state]] = count++
+        }
+        val minimalNext = IntArray(blockCount * classCount)
+        val minimalAccepting = IntArray(blockCount)
+        for (state in 0 until stateCount) {
+            val id = order[block[state]]
+            minimalAccepting[id] = accepting[state]
+            for (cls in 0 until classCount) {
+                val target = next[state * classCount + cls]
+                minimalNext[id * classCount + cls] = if (target < 0) -1 else order[block[target]]
+            }
+        }
+        return Pair(minimalNext, minimalAccepting)
+    }
+
+    private fun newlineReachable(nfa: Nfa, start: Int): Boolean {
+        val seen = BitSet()
+        val pending = ArrayDeque<Int>()
+        pending.add(start)
+        seen.set(start)
+        while (pending.isNotEmpty()) {
+            val state = pending.removeLast()
+            for (target in nfa.epsilons[state]) {
+                if (!seen[target]) {
+                    seen.set(target)
+                    pending.add(target)
+                }
+            }
+            for (move in nfa.moves[state]) {
+                if (contains(nfa.sets[move.set], '\n'.code)) return true
+                if (!seen[move.target]) {
+                    seen.set(move.target)
+                    pending.add(move.target)
+                }
+            }
+        }
+        return false
+    }
+
+    private fun contains(set: IntArray, c: Int): Boolean {
+        for (i in set.indices step 2) {
+            if (c >= set[i] && c <= set[i + 1]) return true
+        }
+        return false
+    }
+
+    private class Move(val set: Int, val target: Int)
+
+    private class Fragment(val start: Int, val end: Int)
+
+    // Thompson NFA. Character sets are sorted disjoint [low, high] pairs, shared by index.
+    private class Nfa {
+        val epsilons = mutableListOf<MutableList<Int>>()
+        val moves = mutableListOf<MutableList<Move>>()
+        val sets = mutableListOf<IntArray>()
+        val accept = mutableListOf<Int>()
+
+        fun state(): Int {
+            epsilons.add(mutableListOf())
+            moves.add(mutableListOf())
+            accept.add(-1)
+            return epsilons.size - 1
+        }
+
+        fun chars(set: IntArray): Fragment {
+            val start = state()
+            val end = state()
+            sets.add(set)
+            moves[start].add(Move(sets.size - 1, end))
+            return Fragment(start, end)
+        }
+
+        fun literal(text: String): Fragment {
+            var result = empty()
+            for (c in text) {
+                result = concat(result, chars(intArrayOf(c.code, c.code)))
+            }
+            return result
+        }
+
+        fun empty(): Fragment {
+            val state = state()
+            return Fragment(state, state)
+        }
+
+        fun concat(first: Fragment, second: Fragment): Fragment {
+            epsilons[first.end].add(second.start)
+            return Fragment(first.start, second.end)
+        }
+
+        fun alternate(first: Fragment, second: Fragment): Fragment {
+            val start = state()
+            val end = state()
+            epsilons[start].add(first.start)
+            epsilons[start].add(second.start)
+            epsilons[first.end].add(end)
+            epsilons[second.end].add(end)
+            return Fragment(start, end)
+        }
+
+        fun repeat(fragment: Fragment, min: Int, unbounded: Boolean): Fragment {
+            val start = state()
+            val end = state()
+            epsilons[start].add(fragment.start)
+            epsilons[fragment.end].add(end)
+            if (min == 0) epsilons[start].add(end)
+            if (unbounded) epsilons[fragment.end].add(fragment.start)
+            return Fragment(start, end)
+        }
+
+        fun closure(set: BitSet) {
+            val pending = ArrayDeque<Int>()
+            var s = set.nextSetBit(0)
+            while (s >= 0) {
+                pending.add(s)
+                s = set.nextSetBit(s + 1)
+            }
+            while (pending.isNotEmpty()) {
+                for (target in epsilons[pending.removeLast()]) {
+                    if (!set[target]) {
+                        set.set(target)
+                        pending.add(target)
+                    }
+                }
+            }
+        }
+
+        fun matchesEmpty(fragment: Fragment): Boolean {
+            val set = BitSet()
+            set.set(fragment.start)
+            closure(set)
+            return set[fragment.end]
+        }
+    }
+
+    // alternation := sequence ('|' sequence)*, sequence := (atom ('*' | '+' | '?')*)*
+    private class RegexParser(private val pattern: String, private val nfa: Nfa) {
+        private var position = 0
+
+        fun parse(): Fragment {
+            val result = alternation()
+            if (position < pattern.length) {
+                throw IllegalArgumentException("Unexpected '${pattern[position]}' at $position in token pattern: $pattern")
+            }
+            return result
+        }
+
+        private fun alternation(): Fragment {
+            var result = sequence()
+            while (position < pattern.length && pattern[position] == '|') {
+                position++
+                result = nfa.alternate(result, sequence())
+            }
+            return result
+        }
+
+        private fun sequence(): Fragment {
+            var result = nfa.empty()
+            while (position < pattern.length && pattern[position] != '|' && pattern[position] != ')') {
+                var atom = atom()
+                while (position < pattern.length && pattern[position] in "*+?") {
+                    atom = when (pattern[position++]) {
+                        '*' -> nfa.repeat(atom, 0, true)
+                        '+' -> nfa.repeat(atom, 1, true)
+                        else -> nfa.repeat(atom, 0, false)
+                    }
+                }
+                result = nfa.concat(result, atom)
+            }
+            return result
+        }
+
+        private fun atom(): Fragment {
+            return when (val c = pattern[position++]) {
+                '(' -> {
+                    val inner = alternation()
+                    if (position >= pattern.length || pattern[position] != ')') {
+                        throw IllegalArgumentException("Missing ')' in token pattern: $pattern")
+                    }
+                    position++
+                    inner
+                }
+                '[' -> nfa.chars(charClass())
+                '.' -> nfa.chars(intArrayOf(0, '\n'.code - 1, '\n'.code + 1, MAX_CHAR))
+                '*', '+', '?' -> throw IllegalArgumentException("Nothing to repeat at ${position - 1} in token pattern: $pattern")
+                '\\' -> nfa.chars(single(escaped()))
+                else -> nfa.chars(single(c.code))
+            }
+        }
+
+        private fun charClass(): IntArray {
+            val negated = position < pattern.length && pattern[position] == '^'
+            if (negated) position++
+            val ranges = mutableListOf<IntArray>()
+            var first = true
+            while (position < pattern.length && (pattern[position] != ']' || first)) {
+                first = false
+                val low = if (pattern[position] == '\\') { position++; escaped() } else pattern[position++].code
+                var high = low
+                if (position + 1 < pattern.length && pattern[position] == '-' && pattern[position + 1] != ']') {
+                    position++
+                    high = if (pattern[position] == '\\') { position++; escaped() } else pattern[position++].code
+                    if (high < low) {
+                        throw IllegalArgumentException("Invalid range in token pattern: $pattern")
+                    }
+                }
+                ranges.add(intArrayOf(low, high))
+            }
+            if (position >= pattern.length) {
+                throw IllegalArgumentException("Missing ']' in token pattern: $pattern")
+            }
+            position++
+
+            ranges.sortBy { it[0] }
+            val merged = mutableListOf<IntArray>()
+            for (r in ranges) {
+                val last = merged.lastOrNull()
+                if (last != null && r[0] <= last[1] + 1) last[1] = maxOf(last[1], r[1]) else merged.add(r.copyOf())
+            }
+            if (!negated) {
+                return merged.flatMap { listOf(it[0], it[1]) }.toIntArray()
+            }
+            val complement = mutableListOf<Int>()
+            var from = 0
+            for (r in merged) {
+                if (r[0] > from) complement.addAll(listOf(from, r[0] - 1))
+                from = r[1] + 1
+            }
+            if (from <= MAX_CHAR) complement.addAll(listOf(from, MAX_CHAR))
+            return complement.toIntArray()
+        }
+
+        private fun escaped(): Int {
+            if (position >= pattern.length) {
+                throw IllegalArgumentException("Dangling '\\' in token pattern: $pattern")
+            }
+            return when (val c = pattern[position++]) {
+                'n' -> '\n'.code
+                'r' -> '\r'.code
+                't' -> '\t'.code
+                else -> c.code
+            }
+        }
+
+        private fun single(c: Int): IntArray {
+            return intArrayOf(c, c)
+        }
+    }
+}
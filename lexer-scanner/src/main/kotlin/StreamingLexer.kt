@@ -0,0 +1,188 @@
+package com.labs.lab3
+
+import java.io.IOException
+import java.io.InputStreamReader
+import java.io.Reader
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.CharsetDecoder
+import java.nio.charset.CodingErrorAction
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+// TableLexer over a Reader, one token at a time. Only a window of the input is held: characters
+// before the current token are dropped when the buffer is refilled, and the buffer only grows when
+// a single token (a long string or comment) does not fit. Tokens are the same as TableLexer's.
+class StreamingLexer(
+    private val reader: Reader,
+    private val table: ScannerTable = TableLexer.SCRIPT_TABLE,
+    bufferSize: Int = 1 shl 16
+) {
+    private val window = Window(CharArray(maxOf(16, bufferSize)))
+    private var position = 0
+    private var exhausted = false
+    private var finished = false
+    private var line = 1
+    private var column = 1
+
+    // The next token, EOF at the end of the input and after it
+    fun nextToken(): Token {
+        while (true) {
+            if (finished) {
+                return Token(TokenType.EOF, "", line, column)
+            }
+            if (position >= window.length) {
+                if (!exhausted) {
+                    refill()
+                    continue
+                }
+                finished = true
+                reader.close()
+                continue
+            }
+
+            val start = position
+            val match = table.match(window, start, exhausted)
+            if (match == ScannerTable.MORE_INPUT) {
+                refill()
+                continue
+            }
+            val rule = (match shr 32).toInt()
+            if (rule < 0) {
+                position++
+                column++
+                return Token(TokenType.UNKNOWN, window.text(start, position), line, column - 1)
+            }
+            position = match.toInt()
+
+            val tokenRule = table.rules[rule]
+            if (tokenRule.action == RuleAction.NEWLINE) {
+                line++
+                column = 0
+                continue
+            }
+            advanceColumns(start, position, table.isMultiline(rule))
+            if (tokenRule.action == RuleAction.EMIT) {
+                return Token(tokenRule.type!!, window.text(start, position), line, column - (position - start))
+            }
+        }
+    }
+
+    fun tokens(): Sequence<Token> {
+        var done = false
+        return generateSequence {
+            if (done) {
+                null
+            } else {
+                val token = nextToken()
+                done = token.type == TokenType.EOF
+                token
+            }
+        }
+    }
+
+    // Drops the characters before the current token, grows the buffer if the token fills it, then reads
+    private fun refill() {
+        window.discard(position)
+        position = 0
+        if (window.length == window.chars.size) {
+            window.chars = window.chars.copyOf(window.chars.size * 2)
+        }
+        val read = reader.read(window.chars, window.length, window.chars.size - window.length)
+        if (read < 0) {
+            exhausted = true
+        } else {
+            window.length += read
+        }
+    }
+
+    private fun advanceColumns(start: Int, end: Int, multiline: Boolean) {
+        if (multiline) {
+            for (i in start until end) {
+                if (window.chars[i] == '\n') {
+                    line++
+                    column = 1
+                } else {
+                    column++
+                }
+            }
+        } else {
+            column += end - start
+        }
+    }
+
+    private class Window(var chars: CharArray) : CharSequence {
+        override var length = 0
+
+        override fun get(index: Int): Char = chars[index]
+
+        override fun subSequence(startIndex: Int, endIndex: Int): CharSequence = text(startIndex, endIndex)
+
+        fun text(start: Int, end: Int): String = String(chars, start, end - start)
+
+        fun discard(count: Int) {
+            System.arraycopy(chars, count, chars, 0, length - count)
+            length -= count
+        }
+    }
+
+    companion object {
+        // Lexes a UTF-8 file through a read-only memory mapping, decoded a buffer at a time
+        @Throws(IOException::class)
+        fun open(path: Path, table: ScannerTable = TableLexer.SCRIPT_TABLE): StreamingLexer {
+            FileChannel.open(path, StandardOpenOption.READ).use { channel ->
+                if (channel.size() > Int.MAX_VALUE) {
+                    return StreamingLexer(InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8), table)
+                }
+                return StreamingLexer(Utf8BufferReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())), table)
+            }
+        }
+    }
+}
+
+// Decodes UTF-8 straight out of a ByteBuffer, e.g. a mapped file, without copying it to the heap first
+class Utf8BufferReader(buffer: ByteBuffer) : Reader() {
+    private val bytes = buffer.duplicate()
+    private val decoder: CharsetDecoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+    private var flushed = false
+    private var pending = -1
+
+    override fun read(target: CharArray, offset: Int, length: Int): Int {
+        if (length == 0) {
+            return 0
+        }
+        var count = 0
+        if (pending >= 0) {
+            target[offset] = pending.toChar()
+            pending = -1
+            count = 1
+        }
+        if (count < length && !flushed) {
+            // The whole input is in the buffer, so every call is the end of the input
+            val out = CharBuffer.wrap(target, offset + count, length - count)
+            val result = decoder.decode(bytes, out, true)
+            if (result.isOverflow && out.position() == offset + count) {
+                // A surrogate pair does not fit in one char of room, its low half waits for the next read
+                val pair = CharBuffer.allocate(2)
+                decoder.decode(bytes, pair, true)
+                target[offset + count] = pair.get(0)
+                pending = pair.get(1).code
+                return count + 1
+            }
+            if (!bytes.hasRemaining()) {
+                decoder.flush(out)
+                flushed = true
+            }
+            count = out.position() - offset
+        }
+        return if (count == 0 && flushed) -1 else count
+    }
+
+    override fun close() {
+    }
+}
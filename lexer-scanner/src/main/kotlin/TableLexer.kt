@@ -0,0 +1,125 @@
+package com.labs.lab3
+
+// The token definitions of Lexer, in priority order. Keywords come before IDENTIFIER so they win
+// equal-length matches inside the DFA, and the unterminated forms only win at the end of the input.
+val scriptTokenRules = listOf(
+    TokenRule(TokenType.VAR, "var", literal = true),
+    TokenRule(TokenType.IF, "if", literal = true),
+    TokenRule(TokenType.ELSE, "else", literal = true),
+    TokenRule(TokenType.FOR, "for", literal = true),
+    TokenRule(TokenType.IN, "in", literal = true),
+    TokenRule(TokenType.FETCH, "fetch", literal = true),
+    TokenRule(TokenType.SELECT, "select", literal = true),
+    TokenRule(TokenType.XPATH, "xpath", literal = true),
+    TokenRule(TokenType.TEXT, "text", literal = true),
+    TokenRule(TokenType.ATTR, "attr", literal = true),
+    TokenRule(TokenType.HTML, "html", literal = true),
+    TokenRule(TokenType.SAVE, "save", literal = true),
+    TokenRule(TokenType.PRINT, "print", literal = true),
+    TokenRule(TokenType.BOOLEAN, "true|false"),
+    TokenRule(TokenType.IDENTIFIER, "[a-zA-Z_][a-zA-Z0-9_]*"),
+    TokenRule(TokenType.NUMBER, "[0-9]+(\\.[0-9]+)?"),
+    TokenRule(TokenType.STRING, "\"[^\"]*\""),
+    TokenRule(null, "\"[^\"]*", action = RuleAction.DROP),
+    TokenRule(TokenType.COMMENT, "//[^\n]*"),
+    TokenRule(TokenType.COMMENT, "/\\*([^*]|\\*+[^*/])*\\*+/"),
+    TokenRule(TokenType.COMMENT, "/\\*([^*]|\\*+[^*/])*\\**"),
+    TokenRule(TokenType.EQUAL_EQUAL, "==", literal = true),
+    TokenRule(TokenType.NOT_EQUAL, "!=", literal = true),
+    TokenRule(TokenType.LESS_EQUAL, "<=", literal = true),
+    TokenRule(TokenType.GREATER_EQUAL, ">=", literal = true),
+    TokenRule(TokenType.AND, "&&", literal = true),
+    TokenRule(TokenType.OR, "||", literal = true),
+    TokenRule(TokenType.EQUALS, "=", literal = true),
+    TokenRule(TokenType.NOT, "!", literal = true),
+    TokenRule(TokenType.LESS, "<", literal = true),
+    TokenRule(TokenType.GREATER, ">", literal = true),
+    TokenRule(TokenType.PLUS, "+", literal = true),
+    TokenRule(TokenType.MINUS, "-", literal = true),
+    TokenRule(TokenType.MULTIPLY, "*", literal = true),
+    TokenRule(TokenType.DIVIDE, "/", literal = true),
+    TokenRule(TokenType.LEFT_PAREN, "(", literal = true),
+    TokenRule(TokenType.RIGHT_PAREN, ")", literal = true),
+    TokenRule(TokenType.LEFT_BRACE, "{", literal = true),
+    TokenRule(TokenType.RIGHT_BRACE, "}", literal = true),
+    TokenRule(TokenType.LEFT_BRACKET, "[", literal = true),
+    TokenRule(TokenType.RIGHT_BRACKET, "]", literal = true),
+    TokenRule(TokenType.SEMICOLON, ";", literal = true),
+    TokenRule(TokenType.COMMA, ",", literal = true),
+    TokenRule(TokenType.DOT, ".", literal = true),
+    TokenRule(TokenType.DOLLAR, "$", literal = true),
+    TokenRule(null, "[ \r\t]+"),
+    TokenRule(null, "\n", literal = true, action = RuleAction.NEWLINE)
+)
+
+// Lexer driven by a generated ScannerTable instead of hand-written branches. It produces the same
+// tokens, lines and columns as Lexer; input no rule matches becomes a one-character UNKNOWN token.
+class TableLexer(private val source: String, private val table: ScannerTable = SCRIPT_TABLE) {
+    private var current = 0
+    private var line = 1
+    private var column = 1
+    private val tokens = mutableListOf<Token>()
+    private val buffer = TokenBuffer(source, TokenType.values())
+
+    fun tokenize(): List<Token> {
+        tokenizeToBuffer()
+        tokens.clear()
+        tokens.addAll(buffer.toTokens())
+        return tokens
+    }
+
+    fun tokenizeToBuffer(): TokenBuffer<TokenType> {
+        while (current < source.length) {
+            val start = current
+            val match = table.match(source, start)
+            val rule = (match shr 32).toInt()
+            if (rule < 0) {
+                current++
+                column++
+                buffer.add(TokenType.UNKNOWN, start, 1, line, column - 1)
+                continue
+            }
+            current = match.toInt()
+
+            val tokenRule = table.rules[rule]
+            if (tokenRule.action == RuleAction.NEWLINE) {
+                line++
+                column = 0
+                continue
+            }
+            advanceColumns(start, current, table.isMultiline(rule))
+            if (tokenRule.action == RuleAction.EMIT) {
+                val type = tokenRule.type!!
+                val name = if (type == TokenType.IDENTIFIER) buffer.identifiers.intern(source, start, current) else -1
+                buffer.add(type, start, current - start, line, column - (current - start), name)
+            }
+        }
+
+        buffer.add(TokenType.EOF, current, 0, line, column)
+        return buffer
+    }
+
+    // A line break inside a token puts the column at 1, as Lexer does
+    private fun advanceColumns(start: Int, end: Int, multiline: Boolean) {
+        if (multiline) {
+            for (i in start until end) {
+                if (source[i] == '\n') {
+                    line++
+                    column = 1
+                } else {
+                    column++
+                }
+            }
+        } else {
+            column += end - start
+        }
+    }
+
+    override fun toString(): String {
+        return tokens.joinToString(separator = "\n")
+    }
+
+    companion object {
+        val SCRIPT_TABLE: ScannerTable by lazy { ScannerGenerator.generate(scriptTokenRules) }
+    }
+}
@@ -0,0 +1,127 @@
+package com.labs.lab3
+
+// A read-only view of source[start, end), the characters are not copied until toString()
+class SourceSlice(private val source: String, private val start: Int, private val end: Int) : CharSequence {
+    override val length: Int
+        get() = end - start
+
+    override fun get(index: Int): Char {
+        if (index < 0 || index >= length) {
+            throw IndexOutOfBoundsException("Index $index out of bounds for length $length")
+        }
+        return source[start + index]
+    }
+
+    override fun subSequence(startIndex: Int, endIndex: Int): CharSequence {
+        if (startIndex < 0 || endIndex > length || startIndex > endIndex) {
+            throw IndexOutOfBoundsException("Range [$startIndex, $endIndex) out of bounds for length $length")
+        }
+        return SourceSlice(source, start + startIndex, start + endIndex)
+    }
+
+    fun contentEquals(text: String): Boolean {
+        return text.length == length && source.regionMatches(start, text, 0, length)
+    }
+
+    override fun toString(): String {
+        return source.substring(start, end)
+    }
+}
+
+// A token that points into the source instead of holding its lexeme
+class OffsetToken<T : Enum<T>>(
+    val type: T,
+    private val source: String,
+    val start: Int,
+    val length: Int,
+    val line: Int,
+    val column: Int
+) {
+    val lexeme: CharSequence
+        get() = SourceSlice(source, start, start + length)
+
+    fun <R> toToken(create: (T, String, Int, Int) -> R): R {
+        return create(type, source.substring(start, start + length), line, column)
+    }
+
+    override fun toString(): String {
+        return "OffsetToken(type=$type, start=$start, length=$length, line=$line, column=$column)"
+    }
+}
+
+// Tokens stored column-wise in parallel IntArrays, so a large file costs six ints per token
+// instead of a Token and a String each. Lexemes are read back from the source on demand, and
+// identifiers also carry the id of their name in identifiers. Types are stored by ordinal and read
+// back through tokenTypes, so each module's TokenType enum can use the same buffer.
+class TokenBuffer<T : Enum<T>>(val source: String, private val tokenTypes: Array<T>, initialCapacity: Int = 64) {
+    val identifiers = IdentifierTable()
+
+    private var types = IntArray(initialCapacity)
+    private var starts = IntArray(initialCapacity)
+    private var lengths = IntArray(initialCapacity)
+    private var lines = IntArray(initialCapacity)
+    private var columns = IntArray(initialCapacity)
+    private var names = IntArray(initialCapacity)
+
+    var size = 0
+        private set
+
+    fun add(type: T, start: Int, length: Int, line: Int, column: Int, name: Int = -1) {
+        if (size == types.size) {
+            val capacity = maxOf(16, size * 2)
+            types = types.copyOf(capacity)
+            starts = starts.copyOf(capacity)
+            lengths = lengths.copyOf(capacity)
+            lines = lines.copyOf(capacity)
+            columns = columns.copyOf(capacity)
+            names = names.copyOf(capacity)
+        }
+        types[size] = type.ordinal
+        starts[size] = start
+        lengths[size] = length
+        lines[size] = line
+        columns[size] = column
+        names[size] = name
+        size++
+    }
+
+    fun type(index: Int): T = tokenTypes[types[checkIndex(index)]]
+
+    fun start(index: Int): Int = starts[checkIndex(index)]
+
+    fun length(index: Int): Int = lengths[checkIndex(index)]
+
+    fun line(index: Int): Int = lines[checkIndex(index)]
+
+    fun column(index: Int): Int = columns[checkIndex(index)]
+
+    // Id of an identifier's name in identifiers, -1 for other tokens
+    fun identifierId(index: Int): Int = names[checkIndex(index)]
+
+    fun lexeme(index: Int): CharSequence {
+        checkIndex(index)
+        return SourceSlice(source, starts[index], starts[index] + lengths[index])
+    }
+
+    operator fun get(index: Int): OffsetToken<T> {
+        checkIndex(index)
+        return OffsetToken(tokenTypes[types[index]], source, starts[index], lengths[index], lines[index], columns[index])
+    }
+
+    // Builds each module's own Token from (type, lexeme, line, column)
+    fun <R> toTokens(create: (T, String, Int, Int) -> R): List<R> {
+        val result = ArrayList<R>(size)
+        for (i in 0 until size) {
+            val lexeme = if (names[i] >= 0) identifiers.name(names[i]) else source.substring(starts[i], starts[i] + lengths[i])
+            result.add(create(tokenTypes[types[i]], lexeme, lines[i], columns[i]))
+        }
+        return result
+    }
+
+    private fun checkIndex(index: Int): Int {
+        if (index < 0 || index >= size) {
+            throw IndexOutOfBoundsException("Token index $index out of bounds for size $size")
+        }
+        return index
+    }
+}
@@ -0,0 +1,58 @@
+package com.labs.lab3
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class IncrementalLexerTest {
+    private class Edit(val source: String, val offset: Int, val removed: Int, val inserted: String)
+
+    @Test
+    fun editsThatOpenAndCloseMultilineTokensMatchLexer() {
+        val edits = listOf(
+            // Opening a string or comment swallows the rest, closing it gives the tokens back
+            Edit("a = 1;\nb = 2;\n", 4, 0, "\""),
+            Edit("a = \"1;\nb = 2;\n", 8, 0, "\""),
+            Edit("x\ny\nz\n", 0, 0, "/*"),
+            Edit("/*x\ny\nz\n", 6, 0, "*/"),
+            // Removing the end of a block comment
+            Edit("/* a\n */ b c", 5, 3, ""),
+            // A CR-only run between tokens
+            Edit("a\r\r\rb", 2, 0, "\n")
+        )
+        for (edit in edits) {
+            val lexer = IncrementalLexer(edit.source)
+            lexer.edit(edit.offset, edit.removed, edit.inserted)
+            val text = edit.source.substring(0, edit.offset) + edit.inserted + edit.source.substring(edit.offset + edit.removed)
+            assertEquals(text, lexer.source)
+            assertEquals(Lexer(text).tokenize(), lexer.tokens(), "edit at ${edit.offset} of ${describe(edit.source)}")
+        }
+    }
+
+    @Test
+    fun randomEditSequencesMatchLexer() {
+        val random = Random(44)
+        repeat(2000) {
+            var text = randomSource(random, 40)
+            val lexer = IncrementalLexer(text)
+            repeat(10) {
+                val offset = random.nextInt(text.length + 1)
+                val removed = random.nextInt(minOf(6, text.length - offset) + 1)
+                val inserted = if (random.nextBoolean()) randomSource(random, 2) else SOURCE_PIECES[random.nextInt(SOURCE_PIECES.size)].take(1)
+                val before = text
+                lexer.edit(offset, removed, inserted)
+                text = text.substring(0, offset) + inserted + text.substring(offset + removed)
+                assertEquals(Lexer(text).tokenize(), lexer.tokens(),
+                    "replacing $removed at $offset with ${describe(inserted)} in ${describe(before)}")
+            }
+        }
+    }
+
+    @Test
+    fun editOutsideTheSourceIsRejected() {
+        val lexer = IncrementalLexer("var a;")
+        assertFailsWith<IllegalArgumentException> { lexer.edit(4, 10, "") }
+        assertFailsWith<IllegalArgumentException> { lexer.edit(-1, 0, "x") }
+    }
+}
@@ -0,0 +1,63 @@
+package com.labs.lab3
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+// The indexOf fast paths against the character-at-a-time loops. Token equality covers type, lexeme,
+// line and column, so a fast path that lands on the right position with the wrong line or column fails.
+class LexerTest {
+    @Test
+    fun unterminatedStrings() {
+        assertSameTokens("\"")
+        assertSameTokens("var a = \"never closed")
+        assertSameTokens("\"never\nclosed\nover lines")
+        assertSameTokens("a \"b\" \"c")
+    }
+
+    @Test
+    fun unterminatedComments() {
+        assertSameTokens("/*")
+        assertSameTokens("/* never closed")
+        assertSameTokens("/* never\nclosed\n*")
+        assertSameTokens("/*/")
+        assertSameTokens("// to the end without a line break")
+    }
+
+    @Test
+    fun commentEndAtEndOfInput() {
+        assertSameTokens("*/")
+        assertSameTokens("x */")
+        assertSameTokens("/* a */")
+        assertSameTokens("/* a\nb */")
+        assertSameTokens("/**/")
+        assertSameTokens("/***/")
+    }
+
+    @Test
+    fun carriageReturnOnlyRuns() {
+        assertSameTokens("\r")
+        assertSameTokens("a\r\r\rb")
+        assertSameTokens("a \t\r \t\rb")
+        assertSameTokens("a\r\n\r\nb\r")
+    }
+
+    @Test
+    fun multilineStringsAndBlockComments() {
+        assertSameTokens("\"one\ntwo\nthree\" after")
+        assertSameTokens("\"\n\n\n\"")
+        assertSameTokens("/* one\n * two\n */ after")
+        assertSameTokens("a /*\n\n*/ b /* c\n */ d\n\"e\nf\"")
+        assertSameTokens("// one\n// two\n\n// three")
+    }
+
+    @Test
+    fun randomSourcesMatchScalarLoops() {
+        for (source in randomSources(46, 5000, 80)) {
+            assertSameTokens(source)
+        }
+    }
+
+    private fun assertSameTokens(source: String) {
+        assertEquals(Lexer(source, fastPaths = false).tokenize(), Lexer(source, fastPaths = true).tokenize(), "source ${describe(source)}")
+    }
+}
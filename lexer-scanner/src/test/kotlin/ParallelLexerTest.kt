@@ -0,0 +1,55 @@
+package com.labs.lab3
+
+import java.util.concurrent.ForkJoinPool
+import kotlin.random.Random
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+class ParallelLexerTest {
+    private val pool = ForkJoinPool(4)
+
+    @AfterTest
+    fun shutDownPool() {
+        pool.shutdown()
+    }
+
+    @Test
+    fun tokensSpanningChunksMatchLexer() {
+        val sources = listOf(
+            // A string and a comment running over many one-line chunks
+            "a\n\"b\nc\nd\ne\" f\n",
+            "a\n/* b\nc\nd\ne */ f\n",
+            // Unterminated since the first chunk: the comment runs to the end, the string is dropped
+            "a\n/* b\nc\nd\n",
+            "a\n\"b\nc\nd\n",
+            // A */ that closes nothing, and one right at the end of the input
+            "x */\ny\n",
+            "/* a\nb\n*/",
+            // CR-only runs and empty lines
+            "a\r\r\n\r\n\n\nb\r\n"
+        )
+        for (source in sources) {
+            for (chunkSize in 1..6) {
+                assertEquals(Lexer(source).tokenize(), ParallelLexer(source, pool, chunkSize).tokenize(),
+                    "chunk size $chunkSize, source ${describe(source)}")
+            }
+        }
+    }
+
+    @Test
+    fun randomSourcesMatchLexer() {
+        val random = Random(45)
+        for (source in randomSources(45, 3000, 200)) {
+            val chunkSize = 1 + random.nextInt(30)
+            assertEquals(Lexer(source).tokenize(), ParallelLexer(source, pool, chunkSize).tokenize(),
+                "chunk size $chunkSize, source ${describe(source)}")
+        }
+    }
+
+    @Test
+    fun defaultChunksMatchLexer() {
+        val source = randomSources(4500, 2000, 200).joinToString("\n")
+        assertEquals(Lexer(source).tokenize(), ParallelLexer(source).tokenize())
+    }
+}
@@ -0,0 +1,33 @@
+package com.labs.lab3
+
+import kotlin.random.Random
+
+// Pieces random sources are glued from: keywords and near-keywords, numbers, strings and comments in
+// every unterminated and multi-line form, a lone */, CR-only runs, line breaks and non-ASCII text
+val SOURCE_PIECES = listOf(
+    "var", "if", "else", "for", "in", "fetch", "select", "print", "true", "false", "vars", "x_1", "_", "a",
+    "12", "3.5", "4.", "9",
+    "\"", "\"ab\"", "\"ab\nc\"", "//c", "/*", "*/", "/*/", "**/", "/* a\n b */",
+    "*", "/", "=", "==", "!", "!=", "<", "<=", ">", ">=", "&", "&&", "|", "||",
+    " ", "  ", "\t", "\r", "\r\r", "\n", "\n\n",
+    "(", ")", "{", "}", "[", "]", ";", ",", ".", "$", "#", "é", "\uD83D\uDE00", "\u0000"
+)
+
+// The same sources every run, so a failure can be reproduced from the seed
+fun randomSources(seed: Long, count: Int, maxPieces: Int): List<String> {
+    val random = Random(seed)
+    return List(count) { randomSource(random, maxPieces) }
+}
+
+fun randomSource(random: Random, maxPieces: Int): String {
+    val source = StringBuilder()
+    repeat(random.nextInt(maxPieces + 1)) {
+        source.append(SOURCE_PIECES[random.nextInt(SOURCE_PIECES.size)])
+    }
+    return source.toString()
+}
+
+// A source with its line breaks visible, for assertion messages
+fun describe(source: String): String {
+    return "\"" + source.replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t") + "\""
+}
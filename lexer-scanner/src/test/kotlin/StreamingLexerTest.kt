@@ -0,0 +1,60 @@
+package com.labs.lab3
+
+import java.io.StringReader
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+class StreamingLexerTest {
+    private val edgeCases = listOf(
+        "",
+        "\"never closed",
+        "/* never closed",
+        "/* never closed *",
+        "x */",
+        "\r\r\r",
+        "\"one\ntwo\nthree\"",
+        "/* one\n * two\n */ after",
+        "var a = \"😀\"; // 😀",
+        "a" + "b".repeat(100) + " \"" + "s".repeat(100) + "\""
+    )
+
+    @Test
+    fun edgeCasesMatchLexerForEveryBufferSize() {
+        for (source in edgeCases) {
+            for (bufferSize in listOf(1, 2, 3, 7, 1 shl 16)) {
+                assertEquals(Lexer(source).tokenize(), streamed(source, bufferSize), "buffer $bufferSize, source ${describe(source)}")
+            }
+        }
+    }
+
+    @Test
+    fun randomSourcesMatchLexer() {
+        val random = Random(43)
+        for (source in randomSources(43, 3000, 60)) {
+            val expected = Lexer(source).tokenize()
+            val bufferSize = 1 + random.nextInt(20)
+            assertEquals(expected, streamed(source, bufferSize), "buffer $bufferSize, source ${describe(source)}")
+            val utf8 = StreamingLexer(Utf8BufferReader(ByteBuffer.wrap(source.toByteArray(Charsets.UTF_8))), bufferSize = bufferSize)
+            assertEquals(expected, utf8.tokens().toList(), "UTF-8, buffer $bufferSize, source ${describe(source)}")
+        }
+    }
+
+    @Test
+    fun mappedFileMatchesLexer() {
+        val source = randomSources(4300, 200, 60).joinToString("\n")
+        val file = Files.createTempFile("streaming-lexer", ".txt")
+        try {
+            Files.write(file, source.toByteArray(Charsets.UTF_8))
+            assertEquals(Lexer(source).tokenize(), StreamingLexer.open(file).tokens().toList())
+        } finally {
+            Files.delete(file)
+        }
+    }
+
+    private fun streamed(source: String, bufferSize: Int): List<Token> {
+        return StreamingLexer(StringReader(source), bufferSize = bufferSize).tokens().toList()
+    }
+}
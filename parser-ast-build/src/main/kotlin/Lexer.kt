@@ -1,4 +1,6 @@
 package com.labs.lab6
+import com.labs.lab3.Keywords
+import com.labs.lab3.TokenBuffer
 import java.util.regex.Pattern
 
 enum class TokenType {
@@ -33,139 +35,282 @@ data class Token(
     val column: Int
 )
 
-class Lexer(private val source: String) {
+fun TokenBuffer<TokenType>.toTokens(): List<Token> = toTokens(::Token)
+
+// How the patterns other than identifiers and keywords are matched. PATTERNS tries each one on the rest
+// of the source, as a copy, in order; COMBINED matches them all at once in place, as alternatives of one
+// pattern in the same order, so the first pattern that matches still wins. AUTOMATON runs them compiled
+// into one DFA, which for these patterns gives the same longest match with the same priorities.
+enum class ScanMode {
+    PATTERNS, COMBINED, AUTOMATON
+}
+
+class Lexer(private val source: String, private val mode: ScanMode = ScanMode.AUTOMATON) {
     private var position = 0
     private var line = 1
     private var column = 1
     private val tokens = mutableListOf<Token>()
+    private val buffer = TokenBuffer(source, TokenType.values())
+
+    // Where the last scanned token starts, and its identifier id if it is an identifier
+    private var tokenStart = 0
+    private var tokenLine = 1
+    private var tokenColumn = 1
+    private var tokenName = -1
+    private var tokenEnd = 0
 
-    // Define regex patterns for token types
-    private val tokenPatterns = mapOf(
-        // Whitespace
-        TokenType.WHITESPACE to Pattern.compile("^[ \\t\\r]+"),
-
-        // Comments
-        TokenType.COMMENT to Pattern.compile("^(//.*|/\\*[\\s\\S]*?\\*/)"),
-
-        // Keywords
-        TokenType.VAR to Pattern.compile("^var\\b"),
-        TokenType.IF to Pattern.compile("^if\\b"),
-        TokenType.ELSE to Pattern.compile("^else\\b"),
-        TokenType.FOR to Pattern.compile("^for\\b"),
-        TokenType.IN to Pattern.compile("^in\\b"),
-
-        // Functions
-        TokenType.FETCH to Pattern.compile("^fetch\\b"),
-        TokenType.SELECT to Pattern.compile("^select\\b"),
-        TokenType.XPATH to Pattern.compile("^xpath\\b"),
-        TokenType.TEXT to Pattern.compile("^text\\b"),
-        TokenType.ATTR to Pattern.compile("^attr\\b"),
-        TokenType.HTML to Pattern.compile("^html\\b"),
-        TokenType.SAVE to Pattern.compile("^save\\b"),
-        TokenType.PRINT to Pattern.compile("^print\\b"),
-
-        // Boolean literals
-        TokenType.BOOLEAN to Pattern.compile("^(true|false)\\b"),
-
-        // Literals
-        TokenType.STRING to Pattern.compile("^\"([^\"\\\\]|\\\\.)*\""),
-        TokenType.NUMBER to Pattern.compile("^\\d+(\\.\\d+)?"),
-        TokenType.IDENTIFIER to Pattern.compile("^[a-zA-Z_][a-zA-Z0-9_]*"),
-
-        // Operators
-        TokenType.EQUALS to Pattern.compile("^=(?!=)"),
-        TokenType.EQUAL_EQUAL to Pattern.compile("^=="),
-        TokenType.NOT_EQUAL to Pattern.compile("^!="),
-        TokenType.GREATER_EQUAL to Pattern.compile("^>="),
-        TokenType.LESS_EQUAL to Pattern.compile("^<="),
-        TokenType.GREATER to Pattern.compile("^>(?!=)"),
-        TokenType.LESS to Pattern.compile("^<(?!=)"),
-        TokenType.PLUS to Pattern.compile("^\\+"),
-        TokenType.MINUS to Pattern.compile("^-"),
-        TokenType.MULTIPLY to Pattern.compile("^\\*"),
-        TokenType.DIVIDE to Pattern.compile("^/(?![/*])"),
-        TokenType.AND to Pattern.compile("^&&"),
-        TokenType.OR to Pattern.compile("^\\|\\|"),
-        TokenType.NOT to Pattern.compile("^!(?!=)"),
-
-        // Symbols
-        TokenType.LEFT_PAREN to Pattern.compile("^\\("),
-        TokenType.RIGHT_PAREN to Pattern.compile("^\\)"),
-        TokenType.LEFT_BRACE to Pattern.compile("^\\{"),
-        TokenType.RIGHT_BRACE to Pattern.compile("^\\}"),
-        TokenType.LEFT_BRACKET to Pattern.compile("^\\["),
-        TokenType.RIGHT_BRACKET to Pattern.compile("^\\]"),
-        TokenType.SEMICOLON to Pattern.compile("^;"),
-        TokenType.COMMA to Pattern.compile("^,"),
-        TokenType.DOT to Pattern.compile("^\\."),
-        TokenType.DOLLAR to Pattern.compile("^\\$")
-    )
+    private val matcher = COMBINED_PATTERN.matcher(source)
 
     fun tokenize(): List<Token> {
+        tokenizeToBuffer()
+        tokens.clear()
+        tokens.addAll(buffer.toTokens())
+        return tokens
+    }
+
+    // Same tokens as tokenize(), kept as offsets into the source
+    fun tokenizeToBuffer(): TokenBuffer<TokenType> {
         while (position < source.length) {
-            var matched = false
-
-            // Handle newlines separately to update line and column counts
-            if (source[position] == '\n') {
-                line++
-                column = 1
-                position++
-                matched = true
-                continue
-            }
+            val type = scan() ?: continue
+            buffer.add(type, tokenStart, position - tokenStart, tokenLine, tokenColumn, tokenName)
+        }
+
+        buffer.add(TokenType.EOF, position, 0, line, column)
+        return buffer
+    }
 
-            val remainingSource = source.substring(position)
-
-            // Try each pattern until one matches
-            for ((type, pattern) in tokenPatterns) {
-                val matcher = pattern.matcher(remainingSource)
-
-                if (matcher.find()) {
-                    val lexeme = matcher.group()
-
-                    // Skip whitespace without creating tokens
-                    if (type != TokenType.WHITESPACE) {
-                        tokens.add(Token(type, lexeme, line, column))
-                    }
-
-                    // Update position and column
-                    position += lexeme.length
-
-                    // For comments, we need to adjust line count if they contain newlines
-                    if (type == TokenType.COMMENT) {
-                        val newlines = lexeme.count { it == '\n' }
-                        if (newlines > 0) {
-                            line += newlines
-                            // Set column to position after the last newline
-                            val lastNewlinePos = lexeme.lastIndexOf('\n')
-                            column = lexeme.length - lastNewlinePos
-                        } else {
-                            column += lexeme.length
-                        }
-                    } else {
-                        column += lexeme.length
-                    }
-
-                    matched = true
-                    break
+    // The next token, comments included, or EOF at the end of the source and after it. Tokens are
+    // the same as tokenize()'s, but only lexed when asked for.
+    fun nextToken(): Token {
+        while (position < source.length) {
+            val type = scan() ?: continue
+            val lexeme = if (tokenName >= 0) buffer.identifiers.name(tokenName) else source.substring(tokenStart, position)
+            return Token(type, lexeme, tokenLine, tokenColumn)
+        }
+        return Token(TokenType.EOF, "", line, column)
+    }
+
+    // Lexes one piece of the source at position. Returns the type of the token it was, or null for a
+    // line break or whitespace; the token itself is left in tokenStart .. position.
+    private fun scan(): TokenType? {
+        tokenStart = position
+        tokenLine = line
+        tokenColumn = column
+        tokenName = -1
+
+        // Handle newlines separately to update line and column counts
+        if (source[position] == '\n') {
+            line++
+            column = 1
+            position++
+            return null
+        }
+
+        // Keywords, booleans and identifiers all start with a letter or '_' and no other pattern
+        // does, so they are matched in place instead of by trying the patterns one by one
+        if (isIdentifierStart(source[position])) {
+            return identifier()
+        }
+
+        val type = when (mode) {
+            ScanMode.PATTERNS -> matchPatterns()
+            ScanMode.COMBINED -> matchCombined()
+            ScanMode.AUTOMATON -> matchAutomaton()
+        }
+        if (type != null) {
+            val end = tokenEnd
+            // For comments, we need to adjust line count if they contain newlines
+            val lastNewlinePos = if (type == TokenType.COMMENT) source.lastIndexOf('\n', end - 1) else -1
+            if (lastNewlinePos >= position) {
+                for (i in position until end) {
+                    if (source[i] == '\n') line++
                 }
+                // Set column to position after the last newline
+                column = end - lastNewlinePos
+            } else {
+                column += end - position
             }
+            position = end
+
+            // Skip whitespace without creating tokens
+            return if (type == TokenType.WHITESPACE) null else type
+        }
+
+        // If no pattern matched, it's an unknown token
+        position++
+        column++
+        return TokenType.UNKNOWN
+    }
+
+    // Tries each pattern in order on the remaining source, leaving the end of the match in tokenEnd
+    private fun matchPatterns(): TokenType? {
+        val remainingSource = source.substring(position)
 
-            // If no pattern matched, it's an unknown token
-            if (!matched) {
-                tokens.add(Token(TokenType.UNKNOWN, source[position].toString(), line, column))
-                position++
-                column++
+        // Try each pattern until one matches
+        for ((type, pattern) in tokenPatterns) {
+            val matcher = pattern.matcher(remainingSource)
+
+            if (matcher.find()) {
+                tokenEnd = position + matcher.end()
+                return type
             }
         }
+        return null
+    }
 
-        tokens.add(Token(TokenType.EOF, "", line, column))
-        return tokens
+    // The combined pattern at position; the group that took part in the match tells which pattern it was
+    private fun matchCombined(): TokenType? {
+        matcher.region(position, source.length)
+        if (!matcher.lookingAt()) {
+            return null
+        }
+        tokenEnd = matcher.end()
+        for (i in PATTERN_GROUPS.indices) {
+            if (matcher.start(PATTERN_GROUPS[i]) >= 0) {
+                return PATTERN_TYPES[i]
+            }
+        }
+        throw IllegalStateException("No pattern group matched at $position")
+    }
+
+    // The DFA of all patterns at position, reading each character once
+    private fun matchAutomaton(): TokenType? {
+        val match = AUTOMATON.match(source, position)
+        if (match < 0) {
+            return null
+        }
+        tokenEnd = match.toInt()
+        return AUTOMATON.type((match shr 32).toInt())
+    }
+
+    // The keyword patterns end in \b, so a keyword directly followed by another word character is an
+    // identifier. ASCII word characters are already part of the run; beyond ASCII the regex engine decides.
+    private fun identifier(): TokenType {
+        val start = position
+        var end = position + 1
+        while (end < source.length && isIdentifierPart(source[end])) {
+            end++
+        }
+
+        val keyword = Keywords.match(source, start, end)
+        var type = if (keyword >= 0) KEYWORD_TYPES[keyword] else null
+        if (type != null && end < source.length && source[end].code >= 128
+            && !WORD_BOUNDARY.matcher(source).region(end, source.length).useTransparentBounds(true).lookingAt()) {
+            type = null
+        }
+        column += end - start
+        position = end
+        if (type == null) {
+            tokenName = buffer.identifiers.intern(source, start, end)
+            return TokenType.IDENTIFIER
+        }
+        return type
+    }
+
+    private fun isIdentifierStart(c: Char): Boolean {
+        return c in 'a'..'z' || c in 'A'..'Z' || c == '_'
+    }
+
+    private fun isIdentifierPart(c: Char): Boolean {
+        return isIdentifierStart(c) || c in '0'..'9'
     }
 
     override fun toString(): String {
         return tokens.joinToString(separator = "\n")
     }
+
+    companion object {
+        private val WORD_BOUNDARY = Pattern.compile("\\b")
+
+        // Token type of each keyword, in the order of Keywords.WORDS
+        private val KEYWORD_TYPES = arrayOf(
+            TokenType.VAR, TokenType.IF, TokenType.ELSE, TokenType.FOR, TokenType.IN,
+            TokenType.FETCH, TokenType.SELECT, TokenType.XPATH, TokenType.TEXT, TokenType.ATTR,
+            TokenType.HTML, TokenType.SAVE, TokenType.PRINT, TokenType.BOOLEAN, TokenType.BOOLEAN
+        )
+
+        // Define regex patterns for token types
+        private val tokenPatterns = mapOf(
+            // Whitespace
+            TokenType.WHITESPACE to Pattern.compile("^[ \\t\\r]+"),
+
+            // Comments
+            TokenType.COMMENT to Pattern.compile("^(//.*|/\\*[\\s\\S]*?\\*/)"),
+
+            // Keywords
+            TokenType.VAR to Pattern.compile("^var\\b"),
+            TokenType.IF to Pattern.compile("^if\\b"),
+            TokenType.ELSE to Pattern.compile("^else\\b"),
+            TokenType.FOR to Pattern.compile("^for\\b"),
+            TokenType.IN to Pattern.compile("^in\\b"),
+
+            // Functions
+            TokenType.FETCH to Pattern.compile("^fetch\\b"),
+            TokenType.SELECT to Pattern.compile("^select\\b"),
+            TokenType.XPATH to Pattern.compile("^xpath\\b"),
+            TokenType.TEXT to Pattern.compile("^text\\b"),
+            TokenType.ATTR to Pattern.compile("^attr\\b"),
+            TokenType.HTML to Pattern.compile("^html\\b"),
+            TokenType.SAVE to Pattern.compile("^save\\b"),
+            TokenType.PRINT to Pattern.compile("^print\\b"),
+
+            // Boolean literals
+            TokenType.BOOLEAN to Pattern.compile("^(true|false)\\b"),
+
+            // Literals
+            TokenType.STRING to Pattern.compile("^\"([^\"\\\\]|\\\\.)*\""),
+            TokenType.NUMBER to Pattern.compile("^\\d+(\\.\\d+)?"),
+            TokenType.IDENTIFIER to Pattern.compile("^[a-zA-Z_][a-zA-Z0-9_]*"),
+
+            // Operators
+            TokenType.EQUALS to Pattern.compile("^=(?!=)"),
+            TokenType.EQUAL_EQUAL to Pattern.compile("^=="),
+            TokenType.NOT_EQUAL to Pattern.compile("^!="),
+            TokenType.GREATER_EQUAL to Pattern.compile("^>="),
+            TokenType.LESS_EQUAL to Pattern.compile("^<="),
+            TokenType.GREATER to Pattern.compile("^>(?!=)"),
+            TokenType.LESS to Pattern.compile("^<(?!=)"),
+            TokenType.PLUS to Pattern.compile("^\\+"),
+            TokenType.MINUS to Pattern.compile("^-"),
+            TokenType.MULTIPLY to Pattern.compile("^\\*"),
+            TokenType.DIVIDE to Pattern.compile("^/(?![/*])"),
+            TokenType.AND to Pattern.compile("^&&"),
+            TokenType.OR to Pattern.compile("^\\|\\|"),
+            TokenType.NOT to Pattern.compile("^!(?!=)"),
+
+            // Symbols
+            TokenType.LEFT_PAREN to Pattern.compile("^\\("),
+            TokenType.RIGHT_PAREN to Pattern.compile("^\\)"),
+            TokenType.LEFT_BRACE to Pattern.compile("^\\{"),
+            TokenType.RIGHT_BRACE to Pattern.compile("^\\}"),
+            TokenType.LEFT_BRACKET to Pattern.compile("^\\["),
+            TokenType.RIGHT_BRACKET to Pattern.compile("^\\]"),
+            TokenType.SEMICOLON to Pattern.compile("^;"),
+            TokenType.COMMA to Pattern.compile("^,"),
+            TokenType.DOT to Pattern.compile("^\\."),
+            TokenType.DOLLAR to Pattern.compile("^\\$")
+        )
+
+        private val PATTERN_TYPES = tokenPatterns.keys.toTypedArray()
+
+        // All patterns as one alternation, each in a group named t0, t1, ... in map order. Without the
+        // leading ^, since lookingAt() anchors the match at the start of the region.
+        private val COMBINED_PATTERN = Pattern.compile(tokenPatterns.values.withIndex().joinToString("|") { (i, pattern) ->
+            "(?<t$i>${pattern.pattern().removePrefix("^")})"
+        })
+
+        // The number of each named group, counting the groups inside the patterns before it
+        private val PATTERN_GROUPS = IntArray(PATTERN_TYPES.size).also { groups ->
+            var group = 1
+            for ((i, pattern) in tokenPatterns.values.withIndex()) {
+                groups[i] = group
+                group += 1 + pattern.matcher("").groupCount()
+            }
+        }
+
+        // Built on first use, so the other modes do not pay for the subset construction
+        private val AUTOMATON: TokenAutomaton by lazy { TokenAutomaton.compile(tokenPatterns) }
+    }
 }
 
 fun main() {
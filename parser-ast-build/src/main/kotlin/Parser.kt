@@ -24,8 +24,13 @@ sealed class Stmt {
     data class Print(val expression: Expr) : Stmt()
 }
 
-class Parser(private val tokens: List<Token>) {
-    private var current = 0
+class Parser(private val tokens: TokenSource) {
+    private var last: Token? = null
+
+    constructor(tokens: List<Token>) : this(ListTokenSource(tokens))
+
+    // Parses straight from the lexer, lexing only as far as the parser has read
+    constructor(lexer: Lexer) : this(LexerTokenSource(lexer))
 
     fun parse(): List<Stmt> {
         val statements = mutableListOf<Stmt>()
@@ -358,7 +363,7 @@ class Parser(private val tokens: List<Token>) {
     }
 
     private fun advance(): Token {
-        if (!isAtEnd()) current++
+        if (!isAtEnd()) last = tokens.next()
         return previous()
     }
 
@@ -367,7 +372,7 @@ class Parser(private val tokens: List<Token>) {
     }
 
     private fun peek(): Token {
-        return tokens[current]
+        return tokens.peek()
     }
 
     // Skip over any comment tokens
@@ -378,7 +383,7 @@ class Parser(private val tokens: List<Token>) {
     }
 
     private fun previous(): Token {
-        return tokens[current - 1]
+        return last ?: throw IllegalStateException("No token has been consumed yet")
     }
 
     private fun consume(type: TokenType, message: String): Token {
@@ -599,7 +604,8 @@ fun main() {
     filteredTokens.forEach { println("${it.type}: '${it.lexeme}'") }
     println()
 
-    val parser = Parser(filteredTokens)
+    // The parser pulls its own tokens, comments and whitespace are dropped as they are lexed
+    val parser = Parser(Lexer(code))
     try {
         val statements = parser.parse()
         val printer = AstPrinter()
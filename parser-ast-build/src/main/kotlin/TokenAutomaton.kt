@@ -0,0 +1,431 @@
+package com.labs.lab6
+
+import com.labs.lab2.FiniteAutomaton
+import com.labs.lab2.Transition
+import java.util.regex.Pattern
+
+// All token patterns compiled into one DFA with the subset construction of lab2's FiniteAutomaton.
+// Every pattern becomes a Glushkov NFA, one state per character position and no epsilon moves, so
+// toDFA can take it as it is. The patterns share the start state, and each DFA state keeps which
+// patterns accept in it.
+//
+// match() reads every character once and keeps the longest match; at equal length the pattern that
+// comes first wins. Only the regex syntax the lexer's patterns use is understood: literals, escapes,
+// classes, '.', groups, alternation, * + ? and their lazy forms, a leading ^, and at the very end a
+// (?!...) of one character or class or a \b, which are checked against the character after the match.
+class TokenAutomaton private constructor(
+    private val types: Array<TokenType>,
+    private val classes: ShortArray,
+    private val classCount: Int,
+    private val next: IntArray,
+    private val accepts: Array<IntArray>,
+    private val terminal: BooleanArray,
+    private val lookaheads: Array<Lookahead?>
+) {
+    val stateCount: Int
+        get() = accepts.size
+
+    fun type(rule: Int): TokenType = types[rule]
+
+    // The longest match at start, packed as (rule shl 32) or end, -1 if no pattern matches
+    fun match(source: CharSequence, start: Int): Long {
+        var state = 0
+        var position = start
+        var best = -1L
+        while (true) {
+            for (rule in accepts[state]) {
+                val lookahead = lookaheads[rule]
+                if (lookahead == null || lookahead.allows(source, position)) {
+                    best = (rule.toLong() shl 32) or position.toLong()
+                    break
+                }
+            }
+            if (terminal[state] || position == source.length) {
+                return best
+            }
+            val characterClass = classes[source[position].code].toInt()
+            if (characterClass < 0) {
+                return best
+            }
+            val target = next[state * classCount + characterClass]
+            if (target < 0) {
+                return best
+            }
+            state = target
+            position++
+        }
+    }
+
+    companion object {
+        private const val START = "s"
+        private val WORD_BOUNDARY = Pattern.compile("\\b")
+
+        // Java's \s, and what '.' does not match without DOTALL
+        private val SPACE = CharSet.of(' '.code..' '.code, '\t'.code..'\r'.code)
+        private val DOT = CharSet.of('\n'.code..'\n'.code, '\r'.code..'\r'.code, 0x85..0x85, 0x2028..0x2029).complement()
+
+        fun compile(patterns: Map<TokenType, Pattern>): TokenAutomaton {
+            val types = patterns.keys.toTypedArray()
+            val lookaheads = arrayOfNulls<Lookahead>(types.size)
+            val glushkov = Glushkov()
+            val startTargets = sortedSetOf<Int>()
+            val finals = HashSet<Int>()
+            for ((rule, pattern) in patterns.values.withIndex()) {
+                val parser = RegexParser(pattern.pattern())
+                val info = glushkov.build(parser.parse(), rule)
+                if (info.nullable) {
+                    throw IllegalArgumentException("Pattern matches the empty string: ${pattern.pattern()}")
+                }
+                lookaheads[rule] = parser.lookahead
+                startTargets.addAll(info.first)
+                finals.addAll(info.last)
+            }
+            if (!finals.containsAll(glushkov.shortestEnds)) {
+                throw IllegalArgumentException("Lazy quantifiers are only supported in a sequence that ends its pattern")
+            }
+
+            // Characters are grouped into classes that every position either matches as a whole or not at all
+            val positionCount = glushkov.sets.size
+            val bounds = sortedSetOf(0, 0x10000)
+            for (set in glushkov.sets) {
+                for (i in set.ranges.indices step 2) {
+                    bounds.add(set.ranges[i])
+                    bounds.add(set.ranges[i + 1] + 1)
+                }
+            }
+            val classes = ShortArray(0x10000) { -1 }
+            val members = ArrayList<Set<Int>>()
+            val classOf = HashMap<Set<Int>, Int>()
+            val edges = bounds.toIntArray()
+            for (i in 0 until edges.size - 1) {
+                val c = edges[i].toChar()
+                val positions = (0 until positionCount).filterTo(HashSet()) { c in glushkov.sets[it] }
+                if (positions.isEmpty()) continue
+                val characterClass = classOf.getOrPut(positions) {
+                    members.add(positions)
+                    members.size - 1
+                }
+                classes.fill(characterClass.toShort(), edges[i], edges[i + 1])
+            }
+
+            // The NFA: START, then p0, p1, ... for the positions. toDFA joins state names with '_'.
+            val transitions = HashMap<Transition, List<String>>()
+            for (state in -1 until positionCount) {
+                val targets = if (state < 0) startTargets else glushkov.follow[state]
+                for ((characterClass, positions) in members.withIndex()) {
+                    val reached = targets.filter { it in positions }.map { "p$it" }
+                    if (reached.isNotEmpty()) {
+                        transitions[Transition(stateName(state), "c$characterClass")] = reached
+                    }
+                }
+            }
+            val nfa = FiniteAutomaton(
+                members.indices.map { "c$it" },
+                listOf(START) + (0 until positionCount).map { "p$it" },
+                START,
+                finals.map { "p$it" }.toSet(),
+                transitions
+            )
+            val dfa = nfa.toDFA()
+
+            // toDFA names a state after the positions in it, in no fixed order, so states are matched by their sets
+            val index = HashMap<List<Int>, Int>()
+            index[positionsOf(dfa.initialState)] = 0
+            for (name in dfa.states) {
+                index.getOrPut(positionsOf(name)) { index.size }
+            }
+            val stateCount = index.size
+            val next = IntArray(stateCount * members.size) { -1 }
+            for ((transition, targets) in dfa.transitions) {
+                val from = index.getValue(positionsOf(transition.state))
+                val characterClass = transition.input.substring(1).toInt()
+                next[from * members.size + characterClass] = index.getValue(positionsOf(targets[0]))
+            }
+
+            val accepts = arrayOfNulls<IntArray>(stateCount)
+            val terminal = BooleanArray(stateCount)
+            for ((positions, state) in index) {
+                val rules = positions.filter { it in finals }.map { glushkov.rules[it] }.distinct().sorted()
+                // Rules after the first one without a lookahead can never win in this state
+                val decisive = rules.indexOfFirst { lookaheads[it] == null }
+                accepts[state] = (if (decisive < 0) rules else rules.subList(0, decisive + 1)).toIntArray()
+                terminal[state] = positions.any { it in glushkov.shortestEnds }
+            }
+
+            return TokenAutomaton(types, classes, members.size, next, accepts.requireNoNulls(), terminal, lookaheads)
+        }
+
+        private fun stateName(state: Int): String = if (state < 0) START else "p$state"
+
+        private fun positionsOf(name: String): List<Int> {
+            return name.split("_").map { if (it == START) -1 else it.substring(1).toInt() }.sorted()
+        }
+    }
+
+    // What has to hold for the character after a match: not in excluded, or a word boundary there
+    private class Lookahead(private val excluded: CharSet?, private val wordBoundary: Boolean) {
+        fun allows(source: CharSequence, position: Int): Boolean {
+            if (wordBoundary) {
+                return WORD_BOUNDARY.matcher(source).region(position, source.length).useTransparentBounds(true).lookingAt()
+            }
+            return position == source.length || source[position] !in excluded!!
+        }
+    }
+
+    // Sorted, disjoint inclusive ranges of char codes, as pairs
+    private class CharSet(val ranges: IntArray) {
+        operator fun contains(c: Char): Boolean {
+            for (i in ranges.indices step 2) {
+                if (c.code < ranges[i]) return false
+                if (c.code <= ranges[i + 1]) return true
+            }
+            return false
+        }
+
+        fun complement(): CharSet {
+            val result = ArrayList<IntRange>()
+            var from = 0
+            for (i in ranges.indices step 2) {
+                if (ranges[i] > from) result.add(from until ranges[i])
+                from = ranges[i + 1] + 1
+            }
+            if (from <= 0xFFFF) result.add(from..0xFFFF)
+            return of(*result.toTypedArray())
+        }
+
+        companion object {
+            fun of(vararg ranges: IntRange): CharSet {
+                val merged = ArrayList<IntArray>()
+                for (range in ranges.filter { !it.isEmpty() }.sortedBy { it.first }) {
+                    val last = merged.lastOrNull()
+                    if (last != null && range.first <= last[1] + 1) {
+                        last[1] = maxOf(last[1], range.last)
+                    } else {
+                        merged.add(intArrayOf(range.first, range.last))
+                    }
+                }
+                return CharSet(merged.flatMap { it.asList() }.toIntArray())
+            }
+
+            fun union(sets: List<CharSet>): CharSet {
+                return of(*sets.flatMap { set -> (set.ranges.indices step 2).map { set.ranges[it]..set.ranges[it + 1] } }.toTypedArray())
+            }
+        }
+    }
+
+    private sealed class Node {
+        class Chars(val set: CharSet) : Node()
+        class Sequence(val items: List<Node>) : Node()
+        class Choice(val branches: List<Node>) : Node()
+        class Repeat(val item: Node, val optional: Boolean, val repeated: Boolean, val lazy: Boolean) : Node()
+    }
+
+    private class RegexParser(private val pattern: String) {
+        private var position = if (pattern.startsWith("^")) 1 else 0
+        var lookahead: Lookahead? = null
+            private set
+
+        fun parse(): Node {
+            val node = choice(0)
+            if (position < pattern.length) {
+                throw error("Unexpected '${pattern[position]}'")
+            }
+            return node
+        }
+
+        private fun choice(depth: Int): Node {
+            val branches = mutableListOf(sequence(depth))
+            while (position < pattern.length && pattern[position] == '|') {
+                position++
+                branches.add(sequence(depth))
+            }
+            return if (branches.size == 1) branches[0] else Node.Choice(branches)
+        }
+
+        private fun sequence(depth: Int): Node {
+            val items = mutableListOf<Node>()
+            while (position < pattern.length && pattern[position] != '|' && pattern[position] != ')') {
+                if (pattern.startsWith("(?!", position) || pattern.startsWith("\\b", position)) {
+                    trailingAssertion(depth)
+                } else {
+                    items.add(quantified(atom(depth)))
+                }
+            }
+            return Node.Sequence(items)
+        }
+
+        // A lookahead or \b, only accepted as the last thing in the pattern
+        private fun trailingAssertion(depth: Int) {
+            if (pattern.startsWith("\\b", position)) {
+                position += 2
+                lookahead = Lookahead(null, true)
+            } else {
+                position += 3
+                val excluded = if (peek() == '[') characterClass() else single()
+                expect(')')
+                lookahead = Lookahead(excluded, false)
+            }
+            if (depth != 0 || position != pattern.length) {
+                throw error("Assertions are only supported at the end of the pattern")
+            }
+        }
+
+        private fun atom(depth: Int): Node {
+            return when (peek()) {
+                '(' -> {
+                    position += if (pattern.startsWith("(?:", position)) 3 else 1
+                    if (peek() == '?') {
+                        throw error("Unsupported group")
+                    }
+                    val node = choice(depth + 1)
+                    expect(')')
+                    node
+                }
+                '[' -> Node.Chars(characterClass())
+                '.' -> {
+                    position++
+                    Node.Chars(DOT)
+                }
+                '*', '+', '?', '{' -> throw error("Nothing to repeat")
+                else -> Node.Chars(single())
+            }
+        }
+
+        private fun quantified(node: Node): Node {
+            val (optional, repeated) = when (if (position < pattern.length) pattern[position] else ' ') {
+                '*' -> true to true
+                '+' -> false to true
+                '?' -> true to false
+                '{' -> throw error("Counted repetition is not supported")
+                else -> return node
+            }
+            position++
+            val lazy = position < pattern.length && pattern[position] == '?'
+            if (lazy) position++
+            return Node.Repeat(node, optional, repeated, lazy)
+        }
+
+        private fun characterClass(): CharSet {
+            expect('[')
+            val negated = peek() == '^'
+            if (negated) position++
+            val parts = ArrayList<CharSet>()
+            while (peek() != ']') {
+                val from = single()
+                if (peek() == '-' && position + 1 < pattern.length && pattern[position + 1] != ']') {
+                    position++
+                    val to = single()
+                    if (from.ranges.size != 2 || from.ranges[0] != from.ranges[1] || to.ranges.size != 2 || to.ranges[0] != to.ranges[1]) {
+                        throw error("Invalid range")
+                    }
+                    parts.add(CharSet.of(from.ranges[0]..to.ranges[0]))
+                } else {
+                    parts.add(from)
+                }
+            }
+            position++
+            val set = CharSet.union(parts)
+            return if (negated) set.complement() else set
+        }
+
+        // One literal character or escape, as a set
+        private fun single(): CharSet {
+            val c = peek()
+            position++
+            if (c != '\\') {
+                return CharSet.of(c.code..c.code)
+            }
+            val escaped = peek()
+            position++
+            return when (escaped) {
+                't' -> CharSet.of('\t'.code..'\t'.code)
+                'n' -> CharSet.of('\n'.code..'\n'.code)
+                'r' -> CharSet.of('\r'.code..'\r'.code)
+                'f' -> CharSet.of(0x0C..0x0C)
+                'd' -> CharSet.of('0'.code..'9'.code)
+                'D' -> CharSet.of('0'.code..'9'.code).complement()
+                's' -> SPACE
+                'S' -> SPACE.complement()
+                else -> {
+                    if (escaped.isLetterOrDigit()) {
+                        throw error("Unsupported escape \\$escaped")
+                    }
+                    CharSet.of(escaped.code..escaped.code)
+                }
+            }
+        }
+
+        private fun peek(): Char {
+            if (position >= pattern.length) {
+                throw error("Unexpected end")
+            }
+            return pattern[position]
+        }
+
+        private fun expect(c: Char) {
+            if (peek() != c) {
+                throw error("Expected '$c'")
+            }
+            position++
+        }
+
+        private fun error(message: String): IllegalArgumentException {
+            return IllegalArgumentException("$message at $position in pattern $pattern")
+        }
+    }
+
+    private class Info(val nullable: Boolean, val first: Set<Int>, val last: Set<Int>)
+
+    // Positions of all patterns with their character sets, rules and follow sets
+    private class Glushkov {
+        val sets = ArrayList<CharSet>()
+        val rules = ArrayList<Int>()
+        val follow = ArrayList<MutableSet<Int>>()
+
+        // Last positions of sequences with a lazy quantifier: a match that gets there is complete
+        val shortestEnds = HashSet<Int>()
+
+        fun build(node: Node, rule: Int): Info {
+            return when (node) {
+                is Node.Chars -> {
+                    val position = sets.size
+                    sets.add(node.set)
+                    rules.add(rule)
+                    follow.add(sortedSetOf())
+                    Info(false, setOf(position), setOf(position))
+                }
+                is Node.Choice -> {
+                    val infos = node.branches.map { build(it, rule) }
+                    Info(infos.any { it.nullable }, infos.flatMapTo(HashSet()) { it.first }, infos.flatMapTo(HashSet()) { it.last })
+                }
+                is Node.Sequence -> {
+                    var info = Info(true, emptySet(), emptySet())
+                    for (item in node.items) {
+                        val next = build(item, rule)
+                        for (position in info.last) {
+                            follow[position].addAll(next.first)
+                        }
+                        info = Info(
+                            info.nullable && next.nullable,
+                            if (info.nullable) info.first + next.first else info.first,
+                            if (next.nullable) info.last + next.last else next.last
+                        )
+                    }
+                    if (node.items.any { it is Node.Repeat && it.lazy }) {
+                        shortestEnds.addAll(info.last)
+                    }
+                    info
+                }
+                is Node.Repeat -> {
+                    val inner = build(node.item, rule)
+                    if (node.repeated) {
+                        for (position in inner.last) {
+                            follow[position].addAll(inner.first)
+                        }
+                    }
+                    Info(inner.nullable || node.optional, inner.first, inner.last)
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.labs.lab6
+
+// Tokens handed to the Parser one at a time. Past the end both peek and next keep returning EOF.
+interface TokenSource {
+    // The token offset places after the next one, without consuming anything
+    fun peek(offset: Int = 0): Token
+
+    fun next(): Token
+}
+
+// Pulls tokens from a Lexer only as far as they are looked at. Comments and whitespace are dropped
+// on the way in, so only the lookahead the parser asked for is ever held.
+class LexerTokenSource(private val lexer: Lexer) : TokenSource {
+    private val lookahead = ArrayDeque<Token>()
+
+    override fun peek(offset: Int): Token {
+        if (offset < 0) {
+            throw IllegalArgumentException("Lookahead offset must not be negative: $offset")
+        }
+        while (lookahead.size <= offset) {
+            if (lookahead.isNotEmpty() && lookahead.last().type == TokenType.EOF) {
+                return lookahead.last()
+            }
+            val token = lexer.nextToken()
+            if (token.type != TokenType.COMMENT && token.type != TokenType.WHITESPACE) {
+                lookahead.addLast(token)
+            }
+        }
+        return lookahead[offset]
+    }
+
+    override fun next(): Token {
+        val token = peek()
+        if (token.type != TokenType.EOF) {
+            lookahead.removeFirst()
+        }
+        return token
+    }
+}
+
+// An already lexed token list, taken as it is. The list has to end with EOF.
+class ListTokenSource(private val tokens: List<Token>) : TokenSource {
+    private var current = 0
+
+    override fun peek(offset: Int): Token {
+        if (offset < 0) {
+            throw IllegalArgumentException("Lookahead offset must not be negative: $offset")
+        }
+        return tokens[minOf(current + offset, tokens.size - 1)]
+    }
+
+    override fun next(): Token {
+        val token = tokens[current]
+        if (token.type != TokenType.EOF) {
+            current++
+        }
+        return token
+    }
+}
@@ -1,132 +1,131 @@
 package com.labs.lab4;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class CombinationGenerator {
-    private static final int MAX_REPETITIONS = 5;
+    private final WordEnumerator enumerator = new WordEnumerator();
 
     public List<String> generateCombinations(List<Token> tokens) {
-        List<List<String>> allPossibilities = new ArrayList<>();
+        return generateCombinations(tokens, new GenerationOptions());
+    }
 
-        for (Token token : tokens) {
-            List<String> possibilities = new ArrayList<>();
+    public List<String> generateCombinations(List<Token> tokens, GenerationOptions options) {
+        List<String> result = new ArrayList<>();
+        generateCombinations(tokens, options, word -> result.add(word.toString()));
+        return result;
+    }
 
-            switch (token.getType()) {
-                case LITERAL:
-                    possibilities.add(token.getValues()[0]);
-                    break;
-
-                case ALTERNATION:
-                    for (String option : token.getValues()) {
-                        possibilities.add(option);
-                    }
-                    break;
-
-                case ZERO_OR_MORE:
-                    possibilities.add(""); // Zero occurrences
-                    for (int i = 1; i <= MAX_REPETITIONS; i++) {
-                        possibilities.add(repeat(token.getValues()[0], i));
-                    }
-                    break;
-
-                case ONE_OR_MORE:
-                    for (int i = 1; i <= MAX_REPETITIONS; i++) {
-                        possibilities.add(repeat(token.getValues()[0], i));
-                    }
-                    break;
-
-                case POWER:
-                    // For power operator, generate exactly the specified count
-                    possibilities.add(repeat(token.getValues()[0], token.getCount()));
-                    break;
-
-                case GROUP_ZERO_OR_MORE:
-                    possibilities.add(""); // Zero occurrences
-                    List<String> baseOptions = new ArrayList<>();
-                    for (String option : token.getValues()) {
-                        baseOptions.add(option);
-                    }
-
-                    // Add 1 to MAX_REPETITIONS repetitions
-                    for (int rep = 1; rep <= MAX_REPETITIONS; rep++) {
-                        List<String> currentRep = generateRepeatedOptions(baseOptions, rep);
-                        possibilities.addAll(currentRep);
-                    }
-                    break;
-
-                case GROUP_ONE_OR_MORE:
-                    baseOptions = new ArrayList<>();
-                    for (String option : token.getValues()) {
-                        baseOptions.add(option);
-                    }
-
-                    // Add 1 to MAX_REPETITIONS repetitions
-                    for (int rep = 1; rep <= MAX_REPETITIONS; rep++) {
-                        List<String> currentRep = generateRepeatedOptions(baseOptions, rep);
-                        possibilities.addAll(currentRep);
-                    }
-                    break;
-
-                case GROUP_POWER:
-                    baseOptions = new ArrayList<>();
-                    for (String option : token.getValues()) {
-                        baseOptions.add(option);
-                    }
-
-                    // Add exactly count repetitions
-                    List<String> exactRep = generateRepeatedOptions(baseOptions, token.getCount());
-                    possibilities.addAll(exactRep);
-                    break;
+    // Streams every combination through the consumer without building the full list.
+    // The CharSequence is reused between calls, copy it if it has to outlive the callback.
+    public long generateCombinations(List<Token> tokens, Consumer<CharSequence> consumer) {
+        return generateCombinations(tokens, new GenerationOptions(), consumer);
+    }
+
+    public long generateCombinations(List<Token> tokens, GenerationOptions options, Consumer<CharSequence> consumer) {
+        List<List<String>> allPossibilities = buildPossibilities(tokens, options);
+        return enumerator.enumerate(allPossibilities, options.getMinLength(), options.getMaxLength(),
+                options.getMaxCount(), consumer);
+    }
+
+    // Number of combinations generateCombinations would list, ignoring the length and count limits
+    public BigInteger countCombinations(List<Token> tokens, GenerationOptions options) {
+        BigInteger total = BigInteger.ONE;
+        for (Token token : tokens) {
+            int[] bounds = options.getRepetitionBounds(token);
+            BigInteger optionCount = BigInteger.valueOf(token.getValues().length);
+            BigInteger tokenTotal = BigInteger.ZERO;
+            for (int rep = bounds[0]; rep <= bounds[1]; rep++) {
+                tokenTotal = tokenTotal.add(optionCount.pow(rep));
             }
+            total = total.multiply(tokenTotal);
+        }
+        return total;
+    }
 
-            allPossibilities.add(possibilities);
+    private List<List<String>> buildPossibilities(List<Token> tokens, GenerationOptions options) {
+        int tokenCount = tokens.size();
+
+        // Shortest and longest text each suffix of the token list can produce,
+        // used to skip repetitions that can never fit the requested word length
+        long[] suffixMin = new long[tokenCount + 1];
+        long[] suffixMax = new long[tokenCount + 1];
+        for (int i = tokenCount - 1; i >= 0; i--) {
+            Token token = tokens.get(i);
+            int[] bounds = options.getRepetitionBounds(token);
+            suffixMin[i] = suffixMin[i + 1] + (long) bounds[0] * shortestValue(token);
+            suffixMax[i] = suffixMax[i + 1] + (long) bounds[1] * longestValue(token);
         }
 
-        return combineAllPossibilities(allPossibilities);
-    }
+        List<List<String>> allPossibilities = new ArrayList<>();
+        long prefixMin = 0;
+        long prefixMax = 0;
 
+        for (int i = 0; i < tokenCount; i++) {
+            Token token = tokens.get(i);
+            long budgetMin = options.getMinLength() - prefixMax - suffixMax[i + 1];
+            long budgetMax = options.getMaxLength() - prefixMin - suffixMin[i + 1];
 
-    private List<String> generateRepeatedOptions(List<String> options, int count) {
-        List<String> result = new ArrayList<>();
-        generateRepeatedOptionsHelper(options, count, "", result);
-        return result;
-    }
+            List<String> possibilities = new ArrayList<>();
+            List<String> baseOptions = Arrays.asList(token.getValues());
+            int[] bounds = options.getRepetitionBounds(token);
+            int shortest = shortestValue(token);
+            int longest = longestValue(token);
+
+            for (int rep = bounds[0]; rep <= bounds[1]; rep++) {
+                if ((long) rep * shortest > budgetMax) {
+                    break; // Every further repetition is even longer
+                }
+                if ((long) rep * longest < budgetMin) {
+                    continue;
+                }
+                possibilities.addAll(generateRepeatedOptions(baseOptions, rep, budgetMin, budgetMax));
+            }
 
-    private void generateRepeatedOptionsHelper(List<String> options, int remainingCount,
-                                               String current, List<String> result) {
-        if (remainingCount == 0) {
-            result.add(current);
-            return;
-        }
+            if (possibilities.isEmpty()) {
+                // No word of the requested length exists
+                return Collections.singletonList(possibilities);
+            }
 
-        for (String option : options) {
-            generateRepeatedOptionsHelper(options, remainingCount - 1, current + option, result);
-        }
-    }
+            int producedMin = Integer.MAX_VALUE;
+            int producedMax = 0;
+            for (String possibility : possibilities) {
+                producedMin = Math.min(producedMin, possibility.length());
+                producedMax = Math.max(producedMax, possibility.length());
+            }
+            prefixMin += producedMin;
+            prefixMax += producedMax;
 
-    private String repeat(String str, int times) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < times; i++) {
-            sb.append(str);
+            allPossibilities.add(possibilities);
         }
-        return sb.toString();
+
+        return allPossibilities;
     }
 
-    private List<String> combineAllPossibilities(List<List<String>> allPossibilities) {
+    private List<String> generateRepeatedOptions(List<String> options, int count, long minLength, long maxLength) {
         List<String> result = new ArrayList<>();
-        combineHelper(allPossibilities, 0, "", result);
+        enumerator.enumerate(Collections.nCopies(count, options), (int) Math.max(0, minLength),
+                (int) Math.min(Integer.MAX_VALUE, maxLength), Long.MAX_VALUE, word -> result.add(word.toString()));
         return result;
     }
 
-    private void combineHelper(List<List<String>> allPossibilities, int index, String current, List<String> result) {
-        if (index == allPossibilities.size()) {
-            result.add(current);
-            return;
+    private int shortestValue(Token token) {
+        int shortest = Integer.MAX_VALUE;
+        for (String value : token.getValues()) {
+            shortest = Math.min(shortest, value.length());
         }
+        return shortest;
+    }
 
-        for (String possibility : allPossibilities.get(index)) {
-            combineHelper(allPossibilities, index + 1, current + possibility, result);
+    private int longestValue(Token token) {
+        int longest = 0;
+        for (String value : token.getValues()) {
+            longest = Math.max(longest, value.length());
         }
+        return longest;
     }
-}
\ No newline at end of file
+}
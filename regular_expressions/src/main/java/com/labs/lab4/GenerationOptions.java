@@ -0,0 +1,109 @@
+package com.labs.lab4;
+
+public class GenerationOptions {
+    public static final int DEFAULT_MAX_REPETITIONS = 5;
+
+    private int zeroOrMoreMin = 0;
+    private int zeroOrMoreMax = DEFAULT_MAX_REPETITIONS;
+    private int oneOrMoreMin = 1;
+    private int oneOrMoreMax = DEFAULT_MAX_REPETITIONS;
+    private int minLength = 0;
+    private int maxLength = Integer.MAX_VALUE;
+    private long maxCount = Long.MAX_VALUE;
+    private boolean simplify = false;
+
+    // Bounds {m,n} used for every '*', both on single symbols and on groups
+    public void setZeroOrMoreBounds(int min, int max) {
+        checkBounds(min, max, 0, "*");
+        this.zeroOrMoreMin = min;
+        this.zeroOrMoreMax = max;
+    }
+
+    // Bounds {m,n} used for every '+', both on single symbols and on groups
+    public void setOneOrMoreBounds(int min, int max) {
+        checkBounds(min, max, 1, "+");
+        this.oneOrMoreMin = min;
+        this.oneOrMoreMax = max;
+    }
+
+    public void setMinLength(int minLength) {
+        if (minLength < 0 || minLength > maxLength) {
+            throw new IllegalArgumentException("Invalid minimum word length: " + minLength);
+        }
+        this.minLength = minLength;
+    }
+
+    public void setMaxLength(int maxLength) {
+        if (maxLength < minLength) {
+            throw new IllegalArgumentException("Invalid maximum word length: " + maxLength);
+        }
+        this.maxLength = maxLength;
+    }
+
+    public void setMaxCount(long maxCount) {
+        if (maxCount < 0) {
+            throw new IllegalArgumentException("Invalid maximum word count: " + maxCount);
+        }
+        this.maxCount = maxCount;
+    }
+
+    // Run RegExSimplifier over the parsed tokens before generating
+    public void setSimplify(boolean simplify) {
+        this.simplify = simplify;
+    }
+
+    public boolean isSimplify() {
+        return simplify;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public long getMaxCount() {
+        return maxCount;
+    }
+
+    public int getZeroOrMoreMin() {
+        return zeroOrMoreMin;
+    }
+
+    public int getZeroOrMoreMax() {
+        return zeroOrMoreMax;
+    }
+
+    public int getOneOrMoreMin() {
+        return oneOrMoreMin;
+    }
+
+    public int getOneOrMoreMax() {
+        return oneOrMoreMax;
+    }
+
+    // Returns {min, max} number of times the token's options are repeated
+    public int[] getRepetitionBounds(Token token) {
+        switch (token.getType()) {
+            case ZERO_OR_MORE:
+            case GROUP_ZERO_OR_MORE:
+                return new int[]{zeroOrMoreMin, zeroOrMoreMax};
+            case ONE_OR_MORE:
+            case GROUP_ONE_OR_MORE:
+                return new int[]{oneOrMoreMin, oneOrMoreMax};
+            case POWER:
+            case GROUP_POWER:
+                return new int[]{token.getCount(), token.getCount()};
+            default:
+                return new int[]{1, 1};
+        }
+    }
+
+    private static void checkBounds(int min, int max, int lowest, String quantifier) {
+        if (min < lowest || max < min) {
+            throw new IllegalArgumentException("Invalid bounds {" + min + "," + max + "} for '" + quantifier + "'");
+        }
+    }
+}
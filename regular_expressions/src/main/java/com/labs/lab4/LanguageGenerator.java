@@ -0,0 +1,139 @@
+package com.labs.lab4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class LanguageGenerator {
+    private final WordEnumerator enumerator = new WordEnumerator();
+    private Map<RegExNode, List<String>> languages;
+    private GenerationOptions options;
+
+    public List<String> generateCombinations(RegExNode root) {
+        return generateCombinations(root, new GenerationOptions());
+    }
+
+    public List<String> generateCombinations(RegExNode root, GenerationOptions options) {
+        List<String> result = new ArrayList<>();
+        generateCombinations(root, options, word -> result.add(word.toString()));
+        return result;
+    }
+
+    public long generateCombinations(RegExNode root, Consumer<CharSequence> consumer) {
+        return generateCombinations(root, new GenerationOptions(), consumer);
+    }
+
+    // The top-level concatenation is streamed straight from its children's languages,
+    // only the subexpressions below it are materialized (and shared between equal subtrees)
+    public long generateCombinations(RegExNode root, GenerationOptions options, Consumer<CharSequence> consumer) {
+        this.languages = new HashMap<>();
+        this.options = options;
+        try {
+            List<List<String>> slots = new ArrayList<>();
+            if (root.getType() == RegExNodeType.CONCATENATION) {
+                for (RegExNode child : root.getChildren()) {
+                    slots.add(language(child));
+                }
+            } else {
+                slots.add(language(root));
+            }
+            return enumerator.enumerate(slots, options.getMinLength(), options.getMaxLength(),
+                    options.getMaxCount(), consumer);
+        } finally {
+            this.languages = null;
+            this.options = null;
+        }
+    }
+
+    private List<String> language(RegExNode node) {
+        List<String> cached = languages.get(node);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<String> result = new ArrayList<>();
+        switch (node.getType()) {
+            case LITERAL:
+                result.add(node.getValue());
+                break;
+
+            case CONCATENATION:
+                List<List<String>> parts = new ArrayList<>();
+                for (RegExNode child : node.getChildren()) {
+                    parts.add(language(child));
+                }
+                enumerate(parts, result);
+                break;
+
+            case ALTERNATION:
+                for (RegExNode child : node.getChildren()) {
+                    result.addAll(language(child));
+                }
+                break;
+
+            case ZERO_OR_MORE:
+                for (int rep = options.getZeroOrMoreMin(); rep <= options.getZeroOrMoreMax(); rep++) {
+                    List<String> repeated = power(node.getChild(), rep);
+                    if (repeated.isEmpty()) {
+                        break; // Every longer repetition exceeds the maximum length as well
+                    }
+                    result.addAll(repeated);
+                }
+                break;
+
+            case ONE_OR_MORE:
+                for (int rep = options.getOneOrMoreMin(); rep <= options.getOneOrMoreMax(); rep++) {
+                    List<String> repeated = power(node.getChild(), rep);
+                    if (repeated.isEmpty()) {
+                        break;
+                    }
+                    result.addAll(repeated);
+                }
+                break;
+
+            case POWER:
+                result.addAll(power(node.getChild(), node.getCount()));
+                break;
+        }
+
+        if (node.getType() == RegExNodeType.LITERAL || node.getType() == RegExNodeType.ALTERNATION) {
+            // Words that alone exceed the maximum length can never be part of the output
+            result.removeIf(word -> word.length() > options.getMaxLength());
+        }
+
+        languages.put(node, result);
+        return result;
+    }
+
+    // L^n is built from L^(n-1) and cached under its own POWER node,
+    // so x*, x+ and x^n over the same x all reuse the same powers
+    private List<String> power(RegExNode base, int count) {
+        if (count == 1) {
+            return language(base);
+        }
+
+        RegExNode key = new RegExNode(RegExNodeType.POWER, base, count);
+        List<String> cached = languages.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<String> result = new ArrayList<>();
+        if (count == 0) {
+            result.add("");
+        } else {
+            List<String> previous = power(base, count - 1);
+            enumerate(Arrays.asList(previous, language(base)), result);
+        }
+
+        languages.put(key, result);
+        return result;
+    }
+
+    private void enumerate(List<List<String>> parts, List<String> result) {
+        enumerator.enumerate(parts, 0, options.getMaxLength(), Long.MAX_VALUE, word -> result.add(word.toString()));
+    }
+}
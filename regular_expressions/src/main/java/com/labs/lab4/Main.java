@@ -1,6 +1,7 @@
 package com.labs.lab4;
 
 import java.util.List;
+import java.util.SplittableRandom;
 
 
 public class Main {
@@ -27,6 +28,40 @@ public class Main {
         System.out.println("\nCombinations for " + regex3 + ":");
         printCombinations(combinations3);
         System.out.println();
+
+
+        GenerationOptions options = new GenerationOptions();
+        options.setOneOrMoreBounds(1, 20);
+        options.setMinLength(10);
+        options.setMaxLength(12);
+        List<String> bounded = generator.generateCombinations(regex1, options);
+        System.out.println("\nCombinations for " + regex1 + " with y+ up to 20 times and length 10..12:");
+        printCombinations(bounded);
+        System.out.println();
+
+
+        RegExSampler sampler = new RegExSampler(new RegExParser().parse(regex3), new SplittableRandom(42));
+        System.out.println("\nRandom samples for " + regex3 + " (out of " + (long) sampler.getCombinationCount() + "):");
+        for (int i = 0; i < 5; i++) {
+            System.out.println(sampler.sample());
+        }
+        System.out.println();
+
+
+        String regex5 = "(a|a|b)x*x*(cd|ce)y^3";
+        GenerationOptions simplifyOptions = new GenerationOptions();
+        simplifyOptions.setSimplify(true);
+        List<String> simplified = generator.generateCombinations(regex5, simplifyOptions);
+        System.out.println("\nCombinations for simplified " + regex5 + ":");
+        printCombinations(simplified);
+        System.out.println();
+
+
+        String regex4 = "(a(b|c))*d^12";
+        List<String> combinations4 = generator.generateNestedCombinations(regex4);
+        System.out.println("\nCombinations for " + regex4 + ":");
+        printCombinations(combinations4);
+        System.out.println();
     }
 
 
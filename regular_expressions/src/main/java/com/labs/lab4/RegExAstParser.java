@@ -0,0 +1,124 @@
+package com.labs.lab4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Recursive-descent parser producing a nested RegExNode tree:
+//   alternation := concatenation ('|' concatenation)*
+//   concatenation := repetition*
+//   repetition := atom ('*' | '+' | '^' digits)*
+//   atom := '(' alternation ')' | '\' char | char
+public class RegExAstParser {
+    private String regex;
+    private int position;
+
+    public RegExNode parse(String regex) {
+        this.regex = regex;
+        this.position = 0;
+
+        RegExNode root = parseAlternation();
+        if (position < regex.length()) {
+            throw error("Unexpected '" + regex.charAt(position) + "'");
+        }
+        return root;
+    }
+
+    static boolean isSpecial(char c) {
+        return c == '(' || c == ')' || c == '|' || c == '*' || c == '+' || c == '^' || c == '\\';
+    }
+
+    private RegExNode parseAlternation() {
+        List<RegExNode> branches = new ArrayList<>();
+        branches.add(parseConcatenation());
+
+        while (peek() == '|') {
+            position++;
+            branches.add(parseConcatenation());
+        }
+
+        return branches.size() == 1 ? branches.get(0) : new RegExNode(RegExNodeType.ALTERNATION, branches);
+    }
+
+    private RegExNode parseConcatenation() {
+        List<RegExNode> items = new ArrayList<>();
+
+        while (position < regex.length() && peek() != '|' && peek() != ')') {
+            items.add(parseRepetition());
+        }
+
+        // An empty concatenation stands for the empty word, e.g. the second branch of (a|)
+        return items.size() == 1 ? items.get(0) : new RegExNode(RegExNodeType.CONCATENATION, items);
+    }
+
+    private RegExNode parseRepetition() {
+        RegExNode node = parseAtom();
+
+        while (position < regex.length()) {
+            char c = peek();
+            if (c == '*') {
+                position++;
+                node = new RegExNode(RegExNodeType.ZERO_OR_MORE, node, 1);
+            } else if (c == '+') {
+                position++;
+                node = new RegExNode(RegExNodeType.ONE_OR_MORE, node, 1);
+            } else if (c == '^') {
+                position++;
+                node = new RegExNode(RegExNodeType.POWER, node, parseCount());
+            } else {
+                break;
+            }
+        }
+
+        return node;
+    }
+
+    private RegExNode parseAtom() {
+        char c = peek();
+
+        if (c == '(') {
+            position++;
+            RegExNode inner = parseAlternation();
+            if (peek() != ')') {
+                throw error("Mismatched parentheses");
+            }
+            position++;
+            return inner;
+        }
+
+        if (c == '*' || c == '+' || c == '^') {
+            throw error("Nothing to repeat before '" + c + "'");
+        }
+
+        if (c == '\\') {
+            position++;
+            if (position >= regex.length()) {
+                throw error("Dangling escape");
+            }
+        }
+
+        return new RegExNode(String.valueOf(regex.charAt(position++)));
+    }
+
+    private int parseCount() {
+        int start = position;
+        int count = 0;
+
+        while (position < regex.length() && Character.isDigit(regex.charAt(position))) {
+            count = Math.addExact(Math.multiplyExact(count, 10), regex.charAt(position) - '0');
+            position++;
+        }
+
+        if (position == start) {
+            throw error("Expected repetition count after '^'");
+        }
+        return count;
+    }
+
+    private char peek() {
+        return position < regex.length() ? regex.charAt(position) : '\0';
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " in regular expression: " + regex);
+    }
+}
@@ -5,14 +5,24 @@ import java.util.List;
 public class RegExCombinationGenerator {
     private RegExParser parser;
     private CombinationGenerator generator;
+    private RegExAstParser astParser;
+    private LanguageGenerator languageGenerator;
+    private RegExSimplifier simplifier;
 
     public RegExCombinationGenerator() {
         this.parser = new RegExParser();
         this.generator = new CombinationGenerator();
+        this.astParser = new RegExAstParser();
+        this.languageGenerator = new LanguageGenerator();
+        this.simplifier = new RegExSimplifier();
     }
 
 
     public List<String> generateCombinations(String regex) {
+        return generateCombinations(regex, new GenerationOptions());
+    }
+
+    public List<String> generateCombinations(String regex, GenerationOptions options) {
         List<Token> tokens = parser.parse(regex);
 
         System.out.println("Parsed tokens:");
@@ -20,6 +30,26 @@ public class RegExCombinationGenerator {
             System.out.println(token);
         }
 
-        return generator.generateCombinations(tokens);
+        if (options.isSimplify()) {
+            SimplificationResult result = simplifier.simplify(tokens, options);
+            tokens = result.getTokens();
+
+            System.out.println(result);
+            for (Token token : tokens) {
+                System.out.println(token);
+            }
+        }
+
+        return generator.generateCombinations(tokens, options);
+    }
+
+
+    // Supports nested groups and multi-digit counts, e.g. (a(b|c))*d^12
+    public List<String> generateNestedCombinations(String regex) {
+        RegExNode root = astParser.parse(regex);
+
+        System.out.println("Parsed expression tree: " + root);
+
+        return languageGenerator.generateCombinations(root);
     }
 }
\ No newline at end of file
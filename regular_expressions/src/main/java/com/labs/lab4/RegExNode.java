@@ -0,0 +1,126 @@
+package com.labs.lab4;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+public class RegExNode {
+    private final RegExNodeType type;
+    private final String value;          // Only used by LITERAL
+    private final List<RegExNode> children;
+    private final int count;             // Only used by POWER
+    private final int hash;
+
+    public RegExNode(String value) {
+        this(RegExNodeType.LITERAL, value, Collections.emptyList(), 1);
+    }
+
+    public RegExNode(RegExNodeType type, List<RegExNode> children) {
+        this(type, null, children, 1);
+    }
+
+    public RegExNode(RegExNodeType type, RegExNode child, int count) {
+        this(type, null, Collections.singletonList(child), count);
+    }
+
+    private RegExNode(RegExNodeType type, String value, List<RegExNode> children, int count) {
+        this.type = type;
+        this.value = value;
+        this.children = List.copyOf(children);
+        this.count = count;
+        this.hash = Objects.hash(type, value, this.children, count);
+    }
+
+    public RegExNodeType getType() {
+        return type;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public List<RegExNode> getChildren() {
+        return children;
+    }
+
+    public RegExNode getChild() {
+        return children.get(0);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    // Nodes are compared structurally so equal subexpressions share one memoized language
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RegExNode)) {
+            return false;
+        }
+        RegExNode other = (RegExNode) obj;
+        return hash == other.hash && type == other.type && count == other.count
+                && Objects.equals(value, other.value) && children.equals(other.children);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case LITERAL:
+                return escape(value);
+            case CONCATENATION: {
+                StringBuilder sb = new StringBuilder();
+                for (RegExNode child : children) {
+                    sb.append(child.toOperandString());
+                }
+                return sb.toString();
+            }
+            case ALTERNATION: {
+                StringBuilder sb = new StringBuilder("(");
+                for (int i = 0; i < children.size(); i++) {
+                    if (i > 0) {
+                        sb.append('|');
+                    }
+                    sb.append(children.get(i));
+                }
+                return sb.append(')').toString();
+            }
+            case ZERO_OR_MORE:
+                return getChild().toQuantifiedString() + "*";
+            case ONE_OR_MORE:
+                return getChild().toQuantifiedString() + "+";
+            default:
+                return getChild().toQuantifiedString() + "^" + count;
+        }
+    }
+
+    private static String escape(String literal) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (RegExAstParser.isSpecial(c)) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private String toOperandString() {
+        return type == RegExNodeType.CONCATENATION && !children.isEmpty() ? "(" + this + ")" : toString();
+    }
+
+    private String toQuantifiedString() {
+        if (type == RegExNodeType.ALTERNATION || (type == RegExNodeType.LITERAL && value.length() == 1)) {
+            return toString();
+        }
+        return "(" + this + ")";
+    }
+}
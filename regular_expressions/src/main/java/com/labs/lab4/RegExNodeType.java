@@ -0,0 +1,10 @@
+package com.labs.lab4;
+
+public enum RegExNodeType {
+    LITERAL,
+    CONCATENATION,
+    ALTERNATION,
+    ZERO_OR_MORE,
+    ONE_OR_MORE,
+    POWER
+}
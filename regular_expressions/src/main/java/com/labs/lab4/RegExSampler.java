@@ -0,0 +1,111 @@
+package com.labs.lab4;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Draws words uniformly from the combinations CombinationGenerator would list, without enumerating them.
+// A token with k options repeated r times contributes k^r combinations, so picking r with weight k^r
+// and then each of the r options uniformly gives every combination the same probability.
+// Only the repetition bounds of GenerationOptions are used, length and count limits do not apply here.
+public class RegExSampler {
+    private final String[][] values;
+    private final int[] minRepetitions;
+    private final double[][] cumulativeWeights; // Distribution over repetition counts, per token
+    private final double combinationCount;
+    private final SplittableRandom random;
+
+    public RegExSampler(List<Token> tokens, SplittableRandom random) {
+        this(tokens, new GenerationOptions(), random);
+    }
+
+    public RegExSampler(List<Token> tokens, GenerationOptions options, SplittableRandom random) {
+        int tokenCount = tokens.size();
+        this.values = new String[tokenCount][];
+        this.minRepetitions = new int[tokenCount];
+        this.cumulativeWeights = new double[tokenCount][];
+        this.random = random;
+
+        double count = 1;
+        for (int i = 0; i < tokenCount; i++) {
+            Token token = tokens.get(i);
+            int[] bounds = options.getRepetitionBounds(token);
+            int optionCount = token.getValues().length;
+            if (optionCount == 0) {
+                throw new IllegalArgumentException("Token has no values: " + token);
+            }
+
+            values[i] = token.getValues();
+            minRepetitions[i] = bounds[0];
+
+            // Weights are k^r scaled by k^-max so that large repetition counts do not overflow
+            double[] weights = new double[bounds[1] - bounds[0] + 1];
+            double total = 0;
+            for (int rep = bounds[0]; rep <= bounds[1]; rep++) {
+                total += Math.pow(optionCount, rep - bounds[1]);
+                weights[rep - bounds[0]] = total;
+            }
+            for (int j = 0; j < weights.length; j++) {
+                weights[j] /= total;
+            }
+            cumulativeWeights[i] = weights;
+
+            count *= total * Math.pow(optionCount, bounds[1]);
+        }
+        this.combinationCount = count;
+    }
+
+    private RegExSampler(RegExSampler parent, SplittableRandom random) {
+        this.values = parent.values;
+        this.minRepetitions = parent.minRepetitions;
+        this.cumulativeWeights = parent.cumulativeWeights;
+        this.combinationCount = parent.combinationCount;
+        this.random = random;
+    }
+
+    // A sampler sharing the same tables with an independent, reproducible random stream,
+    // meant to be handed to another thread
+    public RegExSampler split() {
+        return new RegExSampler(this, random.split());
+    }
+
+    public String sample() {
+        StringBuilder sb = new StringBuilder();
+        sample(sb);
+        return sb.toString();
+    }
+
+    public void sample(StringBuilder out) {
+        for (int i = 0; i < values.length; i++) {
+            String[] options = values[i];
+            int repetitions = minRepetitions[i] + pickRepetitionIndex(cumulativeWeights[i]);
+
+            for (int rep = 0; rep < repetitions; rep++) {
+                out.append(options.length == 1 ? options[0] : options[random.nextInt(options.length)]);
+            }
+        }
+    }
+
+    // Number of combinations the sampler draws from, as a double since it easily exceeds a long
+    public double getCombinationCount() {
+        return combinationCount;
+    }
+
+    private int pickRepetitionIndex(double[] cumulative) {
+        if (cumulative.length == 1) {
+            return 0;
+        }
+
+        double target = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] > target) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,196 @@
+package com.labs.lab4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Rewrites a parsed token list into a smaller one describing the same regular language:
+//   (a|a|b) -> (a|b)        duplicate alternatives are merged
+//   (ab|ac) -> a(b|c)       common prefixes and suffixes are factored out of alternations
+//   a^3     -> aaa          powers of literals are folded into literals
+//   x*x*    -> x*           adjacent quantifiers over the same options are collapsed
+//   x*x+    -> x+
+// Under the bounded repetitions of GenerationOptions the collapsed quantifiers produce fewer
+// (non-duplicate) words than the original tokens, which is the point of running the pass.
+public class RegExSimplifier {
+    private final CombinationGenerator generator = new CombinationGenerator();
+
+    public SimplificationResult simplify(List<Token> tokens) {
+        return simplify(tokens, new GenerationOptions());
+    }
+
+    public SimplificationResult simplify(List<Token> tokens, GenerationOptions options) {
+        List<Token> simplified = new ArrayList<>();
+        for (Token token : tokens) {
+            simplified.addAll(simplifyToken(token));
+        }
+
+        boolean changed;
+        do {
+            changed = false;
+            List<Token> merged = new ArrayList<>();
+
+            for (Token token : simplified) {
+                if (!merged.isEmpty()) {
+                    List<Token> replacement = mergeAdjacent(merged.get(merged.size() - 1), token);
+                    if (replacement != null) {
+                        merged.remove(merged.size() - 1);
+                        merged.addAll(replacement);
+                        changed = true;
+                        continue;
+                    }
+                }
+                merged.add(token);
+            }
+
+            simplified = merged;
+        } while (changed);
+
+        return new SimplificationResult(tokens, simplified,
+                generator.countCombinations(tokens, options), generator.countCombinations(simplified, options));
+    }
+
+    private List<Token> simplifyToken(Token token) {
+        String[] values = distinct(token.getValues());
+
+        switch (token.getType()) {
+            case ALTERNATION:
+                if (values.length == 1) {
+                    return listOf(literal(values[0]));
+                }
+                return factorAlternation(values);
+
+            case POWER:
+                return listOf(literal(values[0].repeat(token.getCount())));
+
+            case GROUP_POWER:
+                if (values.length == 1) {
+                    return listOf(literal(values[0].repeat(token.getCount())));
+                }
+                return listOf(new Token(TokenType.GROUP_POWER, values, token.getCount()));
+
+            case GROUP_ZERO_OR_MORE:
+                return listOf(new Token(values.length == 1 ? TokenType.ZERO_OR_MORE : TokenType.GROUP_ZERO_OR_MORE, values));
+
+            case GROUP_ONE_OR_MORE:
+                return listOf(new Token(values.length == 1 ? TokenType.ONE_OR_MORE : TokenType.GROUP_ONE_OR_MORE, values));
+
+            default:
+                return listOf(token);
+        }
+    }
+
+    // (pxs|pys) -> p (x|y) s
+    private List<Token> factorAlternation(String[] values) {
+        int prefix = values[0].length();
+        for (String value : values) {
+            prefix = Math.min(prefix, commonPrefixLength(values[0], value));
+        }
+
+        String[] remainders = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            remainders[i] = values[i].substring(prefix);
+        }
+
+        int suffix = remainders[0].length();
+        for (String remainder : remainders) {
+            suffix = Math.min(suffix, commonSuffixLength(remainders[0], remainder));
+        }
+        for (int i = 0; i < remainders.length; i++) {
+            remainders[i] = remainders[i].substring(0, remainders[i].length() - suffix);
+        }
+
+        List<Token> result = new ArrayList<>();
+        if (prefix > 0) {
+            result.add(literal(values[0].substring(0, prefix)));
+        }
+        result.add(new Token(TokenType.ALTERNATION, remainders));
+        if (suffix > 0) {
+            String first = values[0];
+            result.add(literal(first.substring(first.length() - suffix)));
+        }
+        return result;
+    }
+
+    // Returns the tokens replacing the pair, or null when they cannot be combined
+    private List<Token> mergeAdjacent(Token left, Token right) {
+        TokenType leftType = left.getType();
+        TokenType rightType = right.getType();
+
+        if (leftType == TokenType.LITERAL && rightType == TokenType.LITERAL) {
+            return listOf(literal(left.getValues()[0] + right.getValues()[0]));
+        }
+
+        if (!sameOptions(left, right)) {
+            return null;
+        }
+
+        if (isZeroOrMore(leftType) && isZeroOrMore(rightType)) {
+            return listOf(left); // x*x* = x*
+        }
+        if (isZeroOrMore(leftType) && isOneOrMore(rightType)) {
+            return listOf(right); // x*x+ = x+
+        }
+        if (isOneOrMore(leftType) && isZeroOrMore(rightType)) {
+            return listOf(left); // x+x* = x+
+        }
+        if (isOneOrMore(leftType) && isOneOrMore(rightType)) {
+            return listOf(single(left), left); // x+x+ = xx+
+        }
+        if (leftType == TokenType.GROUP_POWER && rightType == TokenType.GROUP_POWER) {
+            return listOf(new Token(TokenType.GROUP_POWER, left.getValues(), left.getCount() + right.getCount()));
+        }
+        return null;
+    }
+
+    private boolean sameOptions(Token left, Token right) {
+        return new LinkedHashSet<>(Arrays.asList(left.getValues())).equals(new LinkedHashSet<>(Arrays.asList(right.getValues())));
+    }
+
+    private boolean isZeroOrMore(TokenType type) {
+        return type == TokenType.ZERO_OR_MORE || type == TokenType.GROUP_ZERO_OR_MORE;
+    }
+
+    private boolean isOneOrMore(TokenType type) {
+        return type == TokenType.ONE_OR_MORE || type == TokenType.GROUP_ONE_OR_MORE;
+    }
+
+    // One occurrence of the quantified options
+    private Token single(Token token) {
+        String[] values = token.getValues();
+        return values.length == 1 ? literal(values[0]) : new Token(TokenType.ALTERNATION, values);
+    }
+
+    private Token literal(String value) {
+        return new Token(TokenType.LITERAL, new String[]{value});
+    }
+
+    private String[] distinct(String[] values) {
+        Set<String> unique = new LinkedHashSet<>(Arrays.asList(values));
+        return unique.toArray(new String[0]);
+    }
+
+    private List<Token> listOf(Token... tokens) {
+        return new ArrayList<>(Arrays.asList(tokens));
+    }
+
+    private int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private int commonSuffixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) {
+            i++;
+        }
+        return i;
+    }
+}
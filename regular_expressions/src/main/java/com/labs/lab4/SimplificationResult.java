@@ -0,0 +1,47 @@
+package com.labs.lab4;
+
+import java.math.BigInteger;
+import java.util.List;
+
+public class SimplificationResult {
+    private final List<Token> originalTokens;
+    private final List<Token> tokens;
+    private final BigInteger originalCount;
+    private final BigInteger simplifiedCount;
+
+    public SimplificationResult(List<Token> originalTokens, List<Token> tokens,
+                                BigInteger originalCount, BigInteger simplifiedCount) {
+        this.originalTokens = List.copyOf(originalTokens);
+        this.tokens = List.copyOf(tokens);
+        this.originalCount = originalCount;
+        this.simplifiedCount = simplifiedCount;
+    }
+
+    public List<Token> getOriginalTokens() {
+        return originalTokens;
+    }
+
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    public BigInteger getOriginalCount() {
+        return originalCount;
+    }
+
+    public BigInteger getSimplifiedCount() {
+        return simplifiedCount;
+    }
+
+    // Number of combinations the simplification saves
+    public BigInteger getReduction() {
+        return originalCount.subtract(simplifiedCount);
+    }
+
+    @Override
+    public String toString() {
+        return "Simplified " + originalTokens.size() + " tokens to " + tokens.size()
+                + ", combinations " + originalCount + " -> " + simplifiedCount
+                + " (" + getReduction() + " fewer)";
+    }
+}
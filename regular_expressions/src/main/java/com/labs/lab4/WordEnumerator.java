@@ -0,0 +1,137 @@
+package com.labs.lab4;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class WordEnumerator {
+    private char[] buffer;
+    private int length;
+    private final WordView view = new WordView();
+
+    public WordEnumerator() {
+        this.buffer = new char[64];
+    }
+
+    // Walks the cartesian product of the slots, writing every word into one shared buffer.
+    // The CharSequence handed to the consumer is only valid during the callback,
+    // call toString() on it to keep a copy.
+    public long enumerate(List<? extends List<String>> slots, Consumer<CharSequence> consumer) {
+        return enumerate(slots, 0, Integer.MAX_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    // Same walk, restricted to words with minLength <= length <= maxLength and stopping after limit words.
+    // A branch is cut as soon as the shortest/longest possible rest of the word cannot reach the bounds.
+    public long enumerate(List<? extends List<String>> slots, int minLength, int maxLength, long limit,
+                          Consumer<CharSequence> consumer) {
+        int slotCount = slots.size();
+        long[] suffixMin = new long[slotCount + 1]; // Shortest possible text written by slots i..n-1
+        long[] suffixMax = new long[slotCount + 1]; // Longest possible text written by slots i..n-1
+        for (int i = slotCount - 1; i >= 0; i--) {
+            List<String> options = slots.get(i);
+            if (options.isEmpty()) {
+                return 0;
+            }
+            int shortest = Integer.MAX_VALUE;
+            int longest = 0;
+            for (String option : options) {
+                shortest = Math.min(shortest, option.length());
+                longest = Math.max(longest, option.length());
+            }
+            suffixMin[i] = suffixMin[i + 1] + shortest;
+            suffixMax[i] = suffixMax[i + 1] + longest;
+        }
+        if (limit <= 0 || suffixMin[0] > maxLength || suffixMax[0] < minLength) {
+            return 0;
+        }
+
+        int[] choice = new int[slotCount];   // Option currently used by each slot
+        int[] position = new int[slotCount]; // Buffer length before each slot was written
+        long emitted = 0;
+        int depth = 0;
+        length = 0;
+
+        while (true) {
+            if (depth == slotCount) {
+                consumer.accept(view);
+                emitted++;
+                if (emitted == limit) {
+                    break;
+                }
+
+                // Backtrack to the previous slot and move to its next option
+                depth--;
+                if (depth < 0) {
+                    break;
+                }
+                choice[depth]++;
+                continue;
+            }
+
+            List<String> options = slots.get(depth);
+            if (choice[depth] == options.size()) {
+                choice[depth] = 0;
+                depth--;
+                if (depth < 0) {
+                    break;
+                }
+                choice[depth]++;
+                continue;
+            }
+
+            String option = options.get(choice[depth]);
+            long reached = position[depth] + option.length();
+            if (reached + suffixMin[depth + 1] > maxLength || reached + suffixMax[depth + 1] < minLength) {
+                choice[depth]++;
+                continue;
+            }
+
+            // Truncate back to where this slot starts, then write the chosen option
+            length = position[depth];
+            append(option);
+            depth++;
+            if (depth < slotCount) {
+                position[depth] = length;
+            }
+        }
+
+        return emitted;
+    }
+
+    private void append(String value) {
+        int valueLength = value.length();
+        if (length + valueLength > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + valueLength));
+        }
+        value.getChars(0, valueLength, buffer, length);
+        length += valueLength;
+    }
+
+    private class WordView implements CharSequence {
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+            }
+            return buffer[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+            }
+            return new String(buffer, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer, 0, length);
+        }
+    }
+}